@@ -0,0 +1,59 @@
+package com.teo.crud.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.teo.crud.data.model.Address;
+
+/**
+ * Benchmarks of AddressService, with and without the caches.
+ * The read benchmarks are the same as in CustomerServiceBenchmark.
+ *
+ * @author teodor cotruta
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressServiceBenchmark {
+
+	@Benchmark
+	public Address readHit(ApplicationState state) {
+		return state.addressService.read(state.firstAddressId());
+	}
+
+	@Benchmark
+	public Address read(ApplicationState state) {
+		return state.addressService.read(state.randomAddressId());
+	}
+
+	@Benchmark
+	public Collection<Address> readAll(ApplicationState state) {
+		return state.addressService.readAll();
+	}
+
+	@Benchmark
+	public Address create(ApplicationState state) {
+		return state.addressService.create(ApplicationState.newAddress(0));
+	}
+
+	@Benchmark
+	public Address update(ApplicationState state) {
+		Address current = state.addressService.read(state.randomAddressId());
+		Address address = ApplicationState.newAddress(0);
+		address.setAddressId(current.getAddressId());
+		address.setVersion(current.getVersion());
+		address.setStreetNumber(current.getStreetNumber());
+		return state.addressService.update(address);
+	}
+
+}
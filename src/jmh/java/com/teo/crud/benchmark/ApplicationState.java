@@ -0,0 +1,175 @@
+package com.teo.crud.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.teo.crud.Application;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * The application, started once per benchmark trial, against the embedded HSQLDB
+ * seeded with volume addresses and volume customers, each customer with its own address.
+ *
+ * With cached=false every cache is built with maximumSize=0, so each service read
+ * is a cache miss and goes to the database.
+ * The application logging is set to WARN, the INFO lines of each call would be
+ * measured otherwise.
+ *
+ * @author teodor cotruta
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+	/**
+	 * The number of addresses and of customers added to the sample data.
+	 */
+	@Param({ "1000" })
+	public int volume;
+
+	/**
+	 * False to disable the caches.
+	 */
+	@Param({ "true", "false" })
+	public boolean cached;
+
+	protected ConfigurableApplicationContext context;
+
+	protected CustomerService customerService;
+
+	protected AddressService addressService;
+
+	private long[] customerIds;
+
+	private long[] addressIds;
+
+	@Setup(Level.Trial)
+	public void start() {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("logging.level.com.teo", "WARN");
+		properties.put("server.port", "0");
+		if (!cached) {
+			for (String name : Application.CACHE_NAMES) {
+				properties.put("cache." + name + ".spec", "maximumSize=0");
+			}
+		}
+		configure(properties);
+		context = new SpringApplicationBuilder(Application.class)
+				.web(isWeb() ? WebApplicationType.SERVLET : WebApplicationType.NONE)
+				.properties(properties)
+				.run();
+		customerService = context.getBean(CustomerService.class);
+		addressService = context.getBean(AddressService.class);
+		seed();
+		started();
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		context.close();
+	}
+
+	/**
+	 * @return true to start the embedded servlet container and the MVC controllers
+	 */
+	protected boolean isWeb() {
+		return false;
+	}
+
+	/**
+	 * Called before the application is started, to add or change its properties.
+	 * 
+	 * @param properties of the application
+	 */
+	protected void configure(Map<String, Object> properties) {
+	}
+
+	/**
+	 * Called once the application is started and the data seeded.
+	 */
+	protected void started() {
+	}
+
+	private void seed() {
+		addressIds = new long[volume];
+		customerIds = new long[volume];
+		List<Customer> customers = new ArrayList<Customer>();
+		int created = 0;
+		for (int i = 0; i < volume; i++) {
+			Address address = addressService.create(newAddress(i));
+			addressIds[i] = address.getAddressId();
+			customers.add(newCustomer(i, address));
+			if (customers.size() == 1000 || i == volume - 1) {
+				for (Long customerId : customerService.createAll(customers)) {
+					customerIds[created++] = customerId;
+				}
+				customers.clear();
+			}
+		}
+		customerService.evictCache();
+		addressService.evictCache();
+	}
+
+	static Address newAddress(int i) {
+		Address address = new Address();
+		address.setStreetNumber(String.valueOf(i));
+		address.setStreetName("BENCHMARK STREET");
+		address.setStreetType("STREET");
+		address.setSuburb("TAKAPUNA");
+		address.setCity("AUCKLAND");
+		address.setCountry("NEW ZEALAND");
+		return address;
+	}
+
+	static Customer newCustomer(int i, Address address) {
+		Customer customer = new Customer();
+		customer.setName("CUSTOMER " + i);
+		customer.setTelephoneNumber("09 449 " + i);
+		customer.setAddress(address);
+		return customer;
+	}
+
+	/**
+	 * @return the id of one of the seeded customers, picked at random
+	 */
+	public Long randomCustomerId() {
+		return customerIds[ThreadLocalRandom.current().nextInt(customerIds.length)];
+	}
+
+	/**
+	 * @return the id of one of the seeded addresses, picked at random
+	 */
+	public Long randomAddressId() {
+		return addressIds[ThreadLocalRandom.current().nextInt(addressIds.length)];
+	}
+
+	/**
+	 * @return the id of the first seeded customer, always the same one
+	 */
+	public Long firstCustomerId() {
+		return customerIds[0];
+	}
+
+	/**
+	 * @return the id of the first seeded address, always the same one
+	 */
+	public Long firstAddressId() {
+		return addressIds[0];
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.teo.crud.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.cache.Cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teo.crud.cache.JavaSerializationCodec;
+import com.teo.crud.cache.OffHeapCaffeineCache;
+import com.teo.crud.cache.OffHeapStore;
+import com.teo.crud.cache.SingleFlightCaffeineCache;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Compares the garbage collection of a customers cache on the heap, the
+ * SingleFlightCaffeineCache, and off the heap, the OffHeapCaffeineCache, filled with
+ * entries customers and their addresses. No application context is started.
+ *
+ * - fullGc: the time of a full collection, which marks every live object, so the pause
+ *   grows with the customers on the heap
+ * - readWithGarbage: a cache hit and the garbage of a request, which the young
+ *   collections take, with the cache in the old generation
+ *
+ * The pauses are reported by the gc profiler, gc.count and gc.time, and the heap
+ * used after a full collection is printed at the end of the trial:
+ * shell> mvn -Pbenchmark test-compile exec:exec -Djmh.args="CacheGcBenchmark -prof gc"
+ *
+ * @author teodor cotruta
+ */
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=2g", "-XX:+UseG1GC" })
+@State(Scope.Benchmark)
+public class CacheGcBenchmark {
+
+	/**
+	 * heap for the Caffeine cache of the customers, offheap for the OffHeapCaffeineCache.
+	 */
+	@Param({ "heap", "offheap" })
+	public String tier;
+
+	@Param({ "1000000" })
+	public int entries;
+
+	private Cache cache;
+
+	@Setup(Level.Trial)
+	public void fill() throws IOException {
+		if ("offheap".equals(tier)) {
+			JavaSerializationCodec codec = new JavaSerializationCodec();
+			int entryBytes = codec.encode(newCustomer(entries)).length + 64;
+			// room for the entries below the 7/8 of the store at which the cache evicts
+			OffHeapStore store = new OffHeapStore((long) entries * entryBytes * 3 / 2, 64, null);
+			cache = new OffHeapCaffeineCache("customers", Caffeine.newBuilder(), store, codec, null);
+		} else {
+			cache = new SingleFlightCaffeineCache("customers", Caffeine.newBuilder().maximumSize(entries).build());
+		}
+		for (int i = 1; i <= entries; i++) {
+			cache.put(Long.valueOf(i), newCustomer(i));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void printHeap() {
+		System.gc();
+		System.out.println("tier=" + tier + " entries=" + entries + " heapUsedMB="
+				+ ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 10)
+	public void fullGc() {
+		System.gc();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void readWithGarbage(Blackhole blackhole) {
+		Long id = Long.valueOf(ThreadLocalRandom.current().nextInt(entries) + 1);
+		blackhole.consume(cache.get(id).get());
+		blackhole.consume(new byte[2048]);
+	}
+
+	private static Customer newCustomer(int i) {
+		Address address = ApplicationState.newAddress(i);
+		address.setAddressId(Long.valueOf(i));
+		address.setStreetName("BENCHMARK STREET " + i);
+		address.setVersion(0L);
+		Customer customer = ApplicationState.newCustomer(i, address);
+		customer.setCustomerId(Long.valueOf(i));
+		customer.setVersion(0L);
+		return customer;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.teo.crud.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.teo.crud.cache.CompactEntityCodec;
+import com.teo.crud.cache.JavaSerializationCodec;
+import com.teo.crud.cache.ValueCodec;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.model.JsonViews;
+
+/**
+ * Compares the encoding of a customer with its address, as kept by the off-heap caches
+ * and the shared maps, by the CompactEntityCodec, the java serialization and Jackson
+ * with the WithAddress json view. No application context is started.
+ *
+ * The bytes of an encoded customer are printed at the start of the trial:
+ * shell> mvn -Pbenchmark test-compile exec:exec -Djmh.args="CodecBenchmark -prof gc"
+ *
+ * @author teodor cotruta
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+	@Param({ "compact", "java", "jackson" })
+	public String codec;
+
+	private ValueCodec valueCodec;
+
+	private Customer customer;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() {
+		if ("compact".equals(codec)) {
+			valueCodec = new CompactEntityCodec();
+		} else if ("java".equals(codec)) {
+			valueCodec = new JavaSerializationCodec();
+		} else {
+			valueCodec = new JacksonCodec();
+		}
+		Address address = ApplicationState.newAddress(34);
+		address.setAddressId(1234L);
+		address.setVersion(0L);
+		customer = ApplicationState.newCustomer(1, address);
+		customer.setCustomerId(5678L);
+		customer.setVersion(2L);
+		encoded = valueCodec.encode(customer);
+		System.out.println("codec=" + codec + " customerBytes=" + encoded.length);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return valueCodec.encode(customer);
+	}
+
+	@Benchmark
+	public Object decode() {
+		return valueCodec.decode(encoded);
+	}
+
+	/**
+	 * The json of the customers with their address, as written by the REST controllers.
+	 */
+	private static final class JacksonCodec implements ValueCodec {
+
+		private final ObjectWriter writer;
+
+		private final ObjectReader reader;
+
+		JacksonCodec() {
+			ObjectMapper objectMapper = new ObjectMapper();
+			writer = objectMapper.writerWithView(JsonViews.WithAddress.class);
+			reader = objectMapper.readerFor(Customer.class);
+		}
+
+		@Override
+		public byte[] encode(Object value) {
+			try {
+				return writer.writeValueAsBytes(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public Object decode(byte[] bytes) {
+			try {
+				return reader.readValue(bytes);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.teo.crud.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Throughput of CustomerService.read from 16 threads, with connection pools 
+ * of poolSize connections. With fewer connections than threads, the threads
+ * wait for a connection, see datasource_connection_wait_seconds in GET /metrics.
+ * 
+ * With cached=false each read borrows a connection; with cached=true the reads
+ * are cache hits, without a connection, so the pool size should not matter.
+ * To measure only the database reads:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="ConnectionPoolBenchmark -p cached=false"
+ *
+ * @author teodor cotruta
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class ConnectionPoolBenchmark {
+
+	/**
+	 * The application with a pool of poolSize connections, all opened at start.
+	 */
+	@State(Scope.Benchmark)
+	public static class PoolState extends ApplicationState {
+
+		@Param({ "1", "2", "4", "8", "16" })
+		public int poolSize;
+
+		@Override
+		protected void configure(Map<String, Object> properties) {
+			properties.put("spring.datasource.tomcat.max-active", poolSize);
+			properties.put("spring.datasource.tomcat.max-idle", poolSize);
+			properties.put("spring.datasource.tomcat.initial-size", poolSize);
+			properties.put("spring.datasource.tomcat.min-idle", poolSize);
+		}
+	}
+
+	@Benchmark
+	public Customer read(PoolState state) {
+		return state.customerService.read(state.randomCustomerId());
+	}
+
+}
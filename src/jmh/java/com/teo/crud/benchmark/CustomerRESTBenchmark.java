@@ -0,0 +1,84 @@
+package com.teo.crud.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Benchmarks of the REST controllers through the Spring MVC dispatcher, with MockMvc,
+ * as in CustomerRESTTest. The http connector is not measured.
+ *
+ * @author teodor cotruta
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerRESTBenchmark {
+
+	/**
+	 * The web application with a MockMvc on its dispatcher servlet.
+	 */
+	@State(Scope.Benchmark)
+	public static class WebApplicationState extends ApplicationState {
+
+		MockMvc mvc;
+
+		@Override
+		protected void started() {
+			mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+		}
+
+		@Override
+		protected boolean isWeb() {
+			return true;
+		}
+	}
+
+	@Benchmark
+	public MvcResult getCustomer(WebApplicationState state) throws Exception {
+		return state.mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", state.randomCustomerId())
+				.accept(MediaType.APPLICATION_JSON)).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult getCustomerExpandAddress(WebApplicationState state) throws Exception {
+		return state.mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", state.randomCustomerId())
+				.param("expand", "address").accept(MediaType.APPLICATION_JSON)).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult getCustomerNotModified(WebApplicationState state) throws Exception {
+		return state.mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", state.firstCustomerId())
+				.header("If-None-Match", "\"0\"").accept(MediaType.APPLICATION_JSON)).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult getCustomersPage(WebApplicationState state) throws Exception {
+		return state.mvc.perform(MockMvcRequestBuilders.get("/customer")
+				.param("afterId", String.valueOf(state.randomCustomerId())).param("limit", "100")
+				.accept(MediaType.APPLICATION_JSON)).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult getAddress(WebApplicationState state) throws Exception {
+		return state.mvc.perform(MockMvcRequestBuilders.get("/address/{id}", state.randomAddressId())
+				.accept(MediaType.APPLICATION_JSON)).andReturn();
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.teo.crud.benchmark;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Benchmarks of CustomerService, with and without the caches.
+ *
+ * readHit reads always the same customer, so with cached=true it measures the cache hit path.
+ * read reads random customers among volume, with cached=false it measures the database read.
+ *
+ * @author teodor cotruta
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+	@Benchmark
+	public Customer readHit(ApplicationState state) {
+		return state.customerService.read(state.firstCustomerId());
+	}
+
+	@Benchmark
+	public Customer read(ApplicationState state) {
+		return state.customerService.read(state.randomCustomerId());
+	}
+
+	@Benchmark
+	public Collection<Customer> readAll(ApplicationState state) {
+		return state.customerService.readAll();
+	}
+
+	@Benchmark
+	public List<Customer> readPage(ApplicationState state) {
+		return state.customerService.readPage(state.randomCustomerId(), 100, true);
+	}
+
+	@Benchmark
+	public Customer create(ApplicationState state) {
+		Customer customer = new Customer();
+		customer.setName("BENCHMARK");
+		customer.setTelephoneNumber("09 449 1234");
+		return state.customerService.create(customer);
+	}
+
+	@Benchmark
+	public Customer update(ApplicationState state) {
+		Customer current = state.customerService.read(state.randomCustomerId());
+		Customer customer = new Customer();
+		customer.setCustomerId(current.getCustomerId());
+		customer.setVersion(current.getVersion());
+		customer.setName(current.getName());
+		customer.setTelephoneNumber(current.getTelephoneNumber());
+		customer.setAddress(current.getAddress());
+		return state.customerService.update(customer);
+	}
+
+}
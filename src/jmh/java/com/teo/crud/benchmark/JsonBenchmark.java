@@ -0,0 +1,83 @@
+package com.teo.crud.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.model.JsonViews;
+
+/**
+ * Benchmarks of the Jackson serialization of customers and addresses,
+ * with the json views used by the REST controllers. No application context is started.
+ *
+ * @author teodor cotruta
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+	private ObjectMapper objectMapper;
+
+	private ObjectWriter summaryWriter;
+
+	private ObjectWriter withAddressWriter;
+
+	private Customer customer;
+
+	private Address address;
+
+	private byte[] customerJson;
+
+	@Setup
+	public void setUp() throws IOException {
+		objectMapper = new ObjectMapper();
+		summaryWriter = objectMapper.writerWithView(JsonViews.Summary.class);
+		withAddressWriter = objectMapper.writerWithView(JsonViews.WithAddress.class);
+		address = ApplicationState.newAddress(34);
+		address.setAddressId(1L);
+		address.setVersion(0L);
+		customer = ApplicationState.newCustomer(1, address);
+		customer.setCustomerId(1L);
+		customer.setVersion(0L);
+		customerJson = withAddressWriter.writeValueAsBytes(customer);
+	}
+
+	@Benchmark
+	public byte[] writeCustomer() throws IOException {
+		return summaryWriter.writeValueAsBytes(customer);
+	}
+
+	@Benchmark
+	public byte[] writeCustomerWithAddress() throws IOException {
+		return withAddressWriter.writeValueAsBytes(customer);
+	}
+
+	@Benchmark
+	public byte[] writeAddress() throws IOException {
+		return objectMapper.writeValueAsBytes(address);
+	}
+
+	@Benchmark
+	public Customer readCustomer() throws IOException {
+		return objectMapper.readValue(customerJson, Customer.class);
+	}
+
+}
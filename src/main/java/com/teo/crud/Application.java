@@ -1,18 +1,39 @@
 package com.teo.crud;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.guava.GuavaCache;
 import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.util.StringUtils;
 
-import com.google.common.cache.CacheBuilder;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.topic.ITopic;
+import com.teo.crud.cache.CacheInvalidation;
+import com.teo.crud.cache.CompactEntityCodec;
+import com.teo.crud.cache.HazelcastCacheConfiguration;
+import com.teo.crud.cache.JavaSerializationCodec;
+import com.teo.crud.cache.OffHeapCaffeineCache;
+import com.teo.crud.cache.OffHeapStore;
+import com.teo.crud.cache.SingleFlightCaffeineCache;
+import com.teo.crud.cache.TwoLevelCache;
+import com.teo.crud.cache.ValueCodec;
 
 /**
  * 
@@ -34,12 +55,39 @@ import com.google.common.cache.CacheBuilder;
  *
  * Spring Boot main application class. Serves as both the runtime application
  * entry point and the central Java configuration class.
+ * 
+ * The caching advice runs before the transaction advice, so a cache hit 
+ * doesn't open a transaction, and the caches are updated after the commit.
  */
 @SpringBootApplication
 @EnableTransactionManagement
-@EnableCaching
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
 public class Application {
 
+    /**
+     * The names of the caches created by the cache manager.
+     */
+    public static final String[] CACHE_NAMES = { "addresses", "customers", "addressLists", "customerLists", "customerJson",
+            "missingAddresses", "missingCustomers" };
+
+    /**
+     * The Caffeine cache specification used for a cache without a cache.<name>.spec property.
+     * Every cache is bounded, so it can't grow until the heap is exhausted.
+     */
+    public static final String DEFAULT_CACHE_SPEC = "maximumSize=10000,expireAfterWrite=10m,recordStats";
+
+    /**
+     * The Caffeine cache specification used for a missing cache without a cache.<name>.spec property.
+     * The ids without record expire sooner than the records.
+     */
+    public static final String DEFAULT_MISSING_CACHE_SPEC = "maximumSize=10000,expireAfterWrite=30s,recordStats";
+
+    /**
+     * The Caffeine cache specification used for the off-heap caches without a cache.offheap.spec property.
+     * The off-heap caches are bounded by cache.offheap.max-bytes, not by a maximum size.
+     */
+    public static final String DEFAULT_OFF_HEAP_CACHE_SPEC = "expireAfterAccess=10m,recordStats";
+
     /**
      * Entry point for the application.
      * 
@@ -55,22 +103,90 @@ public class Application {
      * Create a CacheManager implementation class to be used by Spring where
      * <code>@Cacheable</code> annotations are applied.
      * 
-     * @return a CacheManager instance with a list of 2 caches: customers and addresses
+     * Each cache is configured by the property cache.<name>.spec, a Caffeine
+     * CaffeineSpec like "maximumSize=10000,expireAfterWrite=10m,recordStats".
+     * Caches without the property use DEFAULT_CACHE_SPEC, or DEFAULT_MISSING_CACHE_SPEC.
+     * The concurrent misses of the <code>@Cacheable(sync = true)</code> methods
+     * are loaded once, see SingleFlightCaffeineCache.
+     * The ids without record of the cache <name> are cached in the cache missing<Name>,
+     * when there is one: missingCustomers and missingAddresses.
+     * 
+     * The caches of cache.offheap.names keep their values out of the heap, each in an 
+     * OffHeapStore of cache.offheap.max-bytes bytes, see OffHeapCaffeineCache.
+     * The values are encoded by the codec of cache.offheap.codec: compact, the
+     * CompactEntityCodec, or java, the java serialization.
+     * 
+     * With cache.l2.enabled=true, each cache is a TwoLevelCache: the Caffeine cache is
+     * the local level, the caches of cache.l2.names have a Hazelcast map shared by the
+     * nodes as second level, and every put, evict and clear is sent to the other nodes,
+     * which evict their local cache. See HazelcastCacheConfiguration.
+     * 
+     * @param environment the environment the cache specifications are read from
+     * @param hazelcast the Hazelcast member of the node, when cache.l2.enabled=true
+     * @throws IOException if the memory mapped file of an off-heap cache can't be created
+     * @return a CacheManager instance with the caches of CACHE_NAMES: customers and addresses
+     * 			by id, the lists of customers and addresses, the json of the customers
+     * 			and the ids of the missing customers and addresses
      */
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(Environment environment, ObjectProvider<HazelcastInstance> hazelcast)
+            throws IOException {
 
+        List<String> offHeapNames = Arrays.asList(StringUtils.commaDelimitedListToStringArray(
+                environment.getProperty("cache.offheap.names", "")));
+        Map<String, com.github.benmanes.caffeine.cache.Cache<Object, Object>> nativeCaches = 
+                new HashMap<String, com.github.benmanes.caffeine.cache.Cache<Object, Object>>();
+        for (String name : CACHE_NAMES) {
+            if (offHeapNames.contains(name)) {
+                continue;
+            }
+            String spec = environment.getProperty("cache." + name + ".spec",
+                    name.startsWith("missing") ? DEFAULT_MISSING_CACHE_SPEC : DEFAULT_CACHE_SPEC);
+            nativeCaches.put(name, Caffeine.from(spec).build());
+        }
+        List<Cache> caches = new ArrayList<Cache>();
+        for (String name : CACHE_NAMES) {
+            String missingName = "missing" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            if (offHeapNames.contains(name)) {
+                caches.add(offHeapCache(name, environment, nativeCaches.get(missingName)));
+            } else {
+                caches.add(new SingleFlightCaffeineCache(name, nativeCaches.get(name), nativeCaches.get(missingName)));
+            }
+        }
+        HazelcastInstance hazelcastInstance = hazelcast.getIfAvailable();
+        if (hazelcastInstance != null) {
+            List<String> sharedNames = Arrays.asList(StringUtils.commaDelimitedListToStringArray(
+                    environment.getProperty("cache.l2.names", "addresses,customers")));
+            ITopic<CacheInvalidation> invalidations = 
+                    hazelcastInstance.getTopic(HazelcastCacheConfiguration.INVALIDATIONS_TOPIC);
+            String node = hazelcastInstance.getCluster().getLocalMember().getUuid().toString();
+            for (int i = 0; i < caches.size(); i++) {
+                Cache local = caches.get(i);
+                IMap<Object, Object> shared = sharedNames.contains(local.getName())
+                        ? hazelcastInstance.<Object, Object>getMap(HazelcastCacheConfiguration.MAP_PREFIX + local.getName())
+                        : null;
+                caches.set(i, new TwoLevelCache(local, shared, invalidations, node));
+            }
+        }
         SimpleCacheManager simpleCacheManager = new SimpleCacheManager();
-        GuavaCache addressesCache = new GuavaCache("addresses", 
-        		CacheBuilder
-        		.newBuilder()
-        		.build());
-        GuavaCache customersCache = new GuavaCache("customers", 
-        		CacheBuilder
-        		.newBuilder()
-                .expireAfterAccess(10, TimeUnit.MINUTES)
-                .build());
-        simpleCacheManager.setCaches(Arrays.asList(addressesCache, customersCache));
+        simpleCacheManager.setCaches(caches);
         return simpleCacheManager;
     }
+
+    /**
+     * Creates an off-heap cache, its values in direct buffers, or in a memory mapped file 
+     * of cache.offheap.directory, encoded by the codec of cache.offheap.codec.
+     */
+    private static Cache offHeapCache(String name, Environment environment,
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> missing) throws IOException {
+        String directory = environment.getProperty("cache.offheap.directory", "");
+        OffHeapStore store = new OffHeapStore(
+                environment.getProperty("cache.offheap.max-bytes", Long.class, 256L * 1024 * 1024),
+                environment.getProperty("cache.offheap.block-size", Integer.class, 64),
+                StringUtils.hasText(directory) ? new File(directory) : null);
+        String spec = environment.getProperty("cache.offheap.spec", DEFAULT_OFF_HEAP_CACHE_SPEC);
+        ValueCodec codec = "java".equals(environment.getProperty("cache.offheap.codec", "compact"))
+                ? new JavaSerializationCodec() : new CompactEntityCodec();
+        return new OffHeapCaffeineCache(name, Caffeine.from(spec), store, codec, missing);
+    }
 }
@@ -0,0 +1,242 @@
+package com.teo.crud.async;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.teo.crud.metrics.RequestQueries;
+import com.teo.crud.metrics.Timer;
+
+/**
+ * The executor of the async REST requests, the /async/... paths.
+ * 
+ * The service calls of the async requests run on a fixed number of threads, 
+ * so the servlet threads are released while the database works.
+ * At most queueCapacity requests wait for a thread: the next ones are answered
+ * at once with HTTP status 503 and a Retry-After header, instead of piling up 
+ * until the clients time out. A request which is still waiting for a thread after
+ * timeout milliseconds is answered with HTTP status 503 as well, and is never run.
+ * A request which is running after timeout milliseconds is answered with HTTP status 
+ * 504, without Retry-After: its service call goes on and may still commit, so a 
+ * retry of a create could create the record twice.
+ * 
+ * With spring.threads.virtual.enabled=true the threads are virtual threads.
+ * Their number is still bounded, as the database connections are, so the 
+ * requests which can't be served soon are still answered with 503.
+ * 
+ * The time spent in the queue, the rejected and timed out requests, 
+ * the active threads and the queued requests are exported by GET /metrics.
+ * 
+ * @author teodor cotruta
+ */
+@Component
+public class BoundedExecutor {
+
+	/**
+	 * The seconds a client should wait before retrying a request answered with 503.
+	 */
+	static final String RETRY_AFTER_SECONDS = "1";
+
+	private static final int QUEUED = 0;
+
+	private static final int RUNNING = 1;
+
+	private static final int TIMED_OUT = 2;
+
+	private final ThreadPoolExecutor executor;
+
+	private final long timeout;
+
+	private final Timer queueTimer = new Timer();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong timedOut = new AtomicLong();
+
+	private final AtomicLong runningTimedOut = new AtomicLong();
+
+	/**
+	 * @param threads the number of threads running the requests
+	 * @param queueCapacity the maximum number of requests waiting for a thread
+	 * @param timeout the milliseconds before a request is answered with 503
+	 * @param virtualThreads true to run the requests on virtual threads
+	 */
+	@Autowired
+	public BoundedExecutor(@Value("${async.executor.threads:16}") int threads,
+			@Value("${async.executor.queue-capacity:200}") int queueCapacity,
+			@Value("${async.request-timeout:10000}") long timeout,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		this.timeout = timeout;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity),
+				virtualThreads ? Thread.ofVirtual().name("async-", 1).factory() : new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "async-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Runs the task on a thread of the executor.
+	 * The exceptions of the task are handled by the exception handlers
+	 * of the controller, as for a synchronous request.
+	 * 
+	 * @param task the work of the request, usually a call of a synchronous controller method
+	 * @return the result of the task, or a 503 response if the queue is full or the task 
+	 * 			has not started in time, or a 504 response if the task has not completed in time
+	 */
+	public <T> DeferredResult<ResponseEntity<T>> submit(final Callable<ResponseEntity<T>> task) {
+		Request<T> request = new Request<T>(task);
+		try {
+			executor.execute(request);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			request.state.set(TIMED_OUT);
+			request.setResult(BoundedExecutor.<T>unavailable());
+		}
+		return request;
+	}
+
+	private static <T> ResponseEntity<T> unavailable() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+		return new ResponseEntity<T>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return the number of threads running a request
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return the number of requests waiting for a thread
+	 */
+	public int getQueuedCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * @return the number of requests answered with 503 because the queue was full
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the number of requests answered with 503 because they were still waiting for a thread
+	 */
+	public long getTimedOutCount() {
+		return timedOut.get();
+	}
+
+	/**
+	 * @return the number of requests answered with 504 because their task was still running
+	 */
+	public long getRunningTimedOutCount() {
+		return runningTimedOut.get();
+	}
+
+	/**
+	 * @return the timer of the time spent by the requests waiting for a thread
+	 */
+	public Timer getQueueTimer() {
+		return queueTimer;
+	}
+
+	/**
+	 * The deferred result of a request and its task on the executor.
+	 * A request is either run or timed out, never both: a request times out with 503
+	 * only if its task has not started, and a task starts only if its request has
+	 * not timed out.
+	 * The request is its own task, rather than a CompletableFuture.supplyAsync on the
+	 * executor, so the queue time, the RequestQueries of the request and the state
+	 * which tells a 503 from a 504 are kept in one object, completed by the timeout
+	 * of the servlet container.
+	 */
+	final class Request<T> extends DeferredResult<ResponseEntity<T>> implements Runnable {
+
+		private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+		private final Callable<ResponseEntity<T>> task;
+
+		private final RequestQueries queries = RequestQueries.current();
+
+		private final long queued = System.nanoTime();
+
+		Request(Callable<ResponseEntity<T>> task) {
+			super(timeout);
+			this.task = task;
+			onTimeout(new Runnable() {
+				@Override
+				public void run() {
+					timeout();
+				}
+			});
+		}
+
+		@Override
+		public void run() {
+			queueTimer.record(System.nanoTime() - queued, false);
+			if (!state.compareAndSet(QUEUED, RUNNING)) {
+				return;
+			}
+			RequestQueries.resume(queries);
+			try {
+				setResult(task.call());
+			} catch (Exception e) {
+				setErrorResult(e);
+			} finally {
+				RequestQueries.stop();
+			}
+		}
+
+		/**
+		 * Answers the request which has not completed in time.
+		 */
+		void timeout() {
+			if (state.compareAndSet(QUEUED, TIMED_OUT)) {
+				timedOut.incrementAndGet();
+				setResult(BoundedExecutor.<T>unavailable());
+			} else {
+				runningTimedOut.incrementAndGet();
+				setResult(new ResponseEntity<T>(HttpStatus.GATEWAY_TIMEOUT));
+			}
+		}
+
+	}
+
+}
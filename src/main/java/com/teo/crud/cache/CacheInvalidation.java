@@ -0,0 +1,55 @@
+package com.teo.crud.cache;
+
+import java.io.Serializable;
+
+/**
+ * The message sent to the other nodes when a node puts or evicts a key of a cache,
+ * or clears a cache: the other nodes evict the key, or clear the cache, from their
+ * local caches.
+ *
+ * @author teodor cotruta
+ *
+ */
+public final class CacheInvalidation implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String node;
+
+	private final String cacheName;
+
+	private final Object key;
+
+	/**
+	 * @param node the id of the node which sends the message
+	 * @param cacheName the name of the cache
+	 * @param key the key to evict, null to clear the cache
+	 */
+	public CacheInvalidation(String node, String cacheName, Object key) {
+		this.node = node;
+		this.cacheName = cacheName;
+		this.key = key;
+	}
+
+	public String getNode() {
+		return node;
+	}
+
+	public String getCacheName() {
+		return cacheName;
+	}
+
+	public Object getKey() {
+		return key;
+	}
+
+	public boolean isClear() {
+		return key == null;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheInvalidation [node=" + node + ", cacheName=" + cacheName + ", key=" + key + "]";
+	}
+
+}
@@ -0,0 +1,239 @@
+package com.teo.crud.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * Warms up the customers and addresses caches at startup with the ids which were
+ * the hottest in the caches at the last shutdown, when cache.warmup.enabled=true.
+ *
+ * At shutdown, the ids of the customers and addresses caches, at most
+ * cache.warmup.max-ids of each, are written to cache.warmup.file, the hottest first.
+ * The Caffeine caches track the frequency and the recency of their keys, so the
+ * hottest ids are the ids the caches would keep the longest, there is no other tracking.
+ *
+ * At startup, the ids of the file are read by batches of cache.warmup.batch-size ids,
+ * with one query per batch (readByIds), on cache.warmup.threads threads. The warm-up
+ * runs before Spring Boot publishes the readiness of the application, so GET /ready
+ * answers 503 until it is done, or stopped after cache.warmup.timeout seconds.
+ * A batch which fails is logged and skipped, the warm-up doesn't stop the startup.
+ *
+ * @author teodor cotruta
+ */
+@Component
+public class CacheWarmUp implements ApplicationRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(CacheWarmUp.class);
+
+	/**
+	 * The caches warmed up, which are also the property names of the file.
+	 */
+	static final String[] CACHE_NAMES = { "customers", "addresses" };
+
+	private final CacheManager cacheManager;
+
+	private final CustomerService customerService;
+
+	private final AddressService addressService;
+
+	private final boolean enabled;
+
+	private final File file;
+
+	private final int maxIds;
+
+	private final int batchSize;
+
+	private final int threads;
+
+	private final long timeout;
+
+	/**
+	 * @param enabled true to save the hottest ids at shutdown and read them at startup
+	 * @param file the file of the hottest ids
+	 * @param maxIds the maximum number of ids saved by cache
+	 * @param batchSize the number of ids read with one query
+	 * @param threads the number of batches read in parallel
+	 * @param timeout the seconds before the warm-up is stopped
+	 */
+	@Autowired
+	public CacheWarmUp(CacheManager cacheManager, CustomerService customerService, AddressService addressService,
+			@Value("${cache.warmup.enabled:false}") boolean enabled,
+			@Value("${cache.warmup.file:cache-warmup.properties}") String file,
+			@Value("${cache.warmup.max-ids:10000}") int maxIds,
+			@Value("${cache.warmup.batch-size:500}") int batchSize,
+			@Value("${cache.warmup.threads:4}") int threads,
+			@Value("${cache.warmup.timeout:120}") long timeout) {
+		this.cacheManager = cacheManager;
+		this.customerService = customerService;
+		this.addressService = addressService;
+		this.enabled = enabled;
+		this.file = new File(file);
+		this.maxIds = maxIds;
+		this.batchSize = batchSize;
+		this.threads = threads;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		if (enabled) {
+			warmUp();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (enabled) {
+			try {
+				saveHottestIds();
+			} catch (IOException e) {
+				logger.warn("The hottest ids could not be saved to " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the hottest ids of each cache to the file.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public void saveHottestIds() throws IOException {
+		Properties ids = new Properties();
+		for (String name : CACHE_NAMES) {
+			ids.setProperty(name, StringUtils.collectionToCommaDelimitedString(hottestKeys(cacheManager.getCache(name), maxIds)));
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			ids.store(out, "The hottest ids of the caches, read by the warm-up at startup");
+		} finally {
+			out.close();
+		}
+		logger.info("Saved the hottest ids of the caches to {}", file);
+	}
+
+	/**
+	 * Reads the customers and addresses of the ids of the file into the caches,
+	 * by batches, in parallel. Does nothing if there is no file.
+	 *
+	 * @return the number of records read
+	 * @throws IOException if the file can't be read
+	 * @throws InterruptedException if the thread is interrupted while it waits for the batches
+	 */
+	public int warmUp() throws IOException, InterruptedException {
+		if (!file.exists()) {
+			logger.info("No cache warm-up, {} doesn't exist", file);
+			return 0;
+		}
+		Properties ids = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			ids.load(in);
+		} finally {
+			in.close();
+		}
+
+		long start = System.nanoTime();
+		final AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "cache-warmup-" + threadCount.incrementAndGet());
+			}
+		});
+		try {
+			for (final String name : CACHE_NAMES) {
+				List<Long> cacheIds = parseIds(ids.getProperty(name, ""));
+				for (int from = 0; from < cacheIds.size(); from += batchSize) {
+					final List<Long> batch = cacheIds.subList(from, Math.min(from + batchSize, cacheIds.size()));
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								count.addAndGet(read(name, batch));
+							} catch (RuntimeException e) {
+								logger.warn("A batch of the " + name + " cache warm-up failed", e);
+							}
+						}
+					});
+				}
+			}
+			executor.shutdown();
+			if (!executor.awaitTermination(timeout, TimeUnit.SECONDS)) {
+				logger.warn("The cache warm-up was stopped after {} seconds", timeout);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		logger.info("Warmed up the caches with {} records in {} ms", count.get(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return count.get();
+	}
+
+	private int read(String name, List<Long> ids) {
+		return "customers".equals(name) ? customerService.readByIds(ids).size() : addressService.readByIds(ids).size();
+	}
+
+	/**
+	 * @return the keys of the cache, the hottest first, at most limit keys
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Object> hottestKeys(Cache cache, int limit) {
+		if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+			return Collections.emptyList();
+		}
+		com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+				(com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+		Policy.Eviction<Object, Object> eviction = nativeCache.policy().eviction().orElse(null);
+		if (eviction != null) {
+			return new ArrayList<Object>(eviction.hottest(limit).keySet());
+		}
+		List<Object> keys = new ArrayList<Object>(nativeCache.asMap().keySet());
+		return keys.size() > limit ? keys.subList(0, limit) : keys;
+	}
+
+	private static List<Long> parseIds(String ids) {
+		List<Long> parsed = new ArrayList<Long>();
+		for (String id : StringUtils.commaDelimitedListToStringArray(ids)) {
+			try {
+				parsed.add(Long.valueOf(id.trim()));
+			} catch (NumberFormatException e) {
+				logger.warn("Skipped the id {} of the cache warm-up", id);
+			}
+		}
+		return parsed;
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.teo.crud.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.hibernate.Hibernate;
+
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * A compact binary ValueCodec of the customers and addresses, for the caches which keep
+ * their values serialized (OffHeapCaffeineCache) or share them (the Hazelcast maps of
+ * TwoLevelCache, see CompactEntitySerializer).
+ *
+ * The java serialization writes the class descriptors and the field names of each
+ * object, a customer with its address takes about 600 bytes. This codec writes the
+ * fields only, in a fixed order:
+ * - a type byte: CUSTOMER, ADDRESS, or SERIALIZED for any other value, which is
+ *   written with the java serialization
+ * - a byte of flags, one bit per nullable Long field which is not null
+ * - the Longs, ids and versions, as unsigned varints: 7 bits per byte, the high bit
+ *   set when a byte follows, so an id below 128 takes one byte
+ * - the strings as the varint of their UTF-8 length plus one, 0 for null, and their
+ *   UTF-8 bytes
+ * - the address of a customer as a byte: NO_ADDRESS, or ADDRESS followed by the address
+ *
+ * A customer with its address takes about 90 bytes, see CodecBenchmark. A lazy proxy
+ * of the address which has not been loaded is loaded before it is written: a decoded
+ * customer is read with ?expand=address and its ETag has the version of the address.
+ * The customers cached by read(), readByIds() and readAll() have their address loaded,
+ * the address of a managed customer put by update() is loaded by its open session.
+ *
+ * @author teodor cotruta
+ */
+public class CompactEntityCodec implements ValueCodec {
+
+	static final byte SERIALIZED = 0;
+
+	static final byte CUSTOMER = 1;
+
+	static final byte ADDRESS = 2;
+
+	static final byte NO_ADDRESS = 0;
+
+	private static final int ID = 1;
+
+	private static final int VERSION = 2;
+
+	private final JavaSerializationCodec serialization = new JavaSerializationCodec();
+
+	@Override
+	public byte[] encode(Object value) {
+		if (value instanceof Customer) {
+			Output out = new Output(128);
+			out.writeByte(CUSTOMER);
+			writeCustomer(out, (Customer) value);
+			return out.toByteArray();
+		}
+		if (value instanceof Address) {
+			Output out = new Output(96);
+			out.writeByte(ADDRESS);
+			writeAddress(out, (Address) value);
+			return out.toByteArray();
+		}
+		byte[] serialized = serialization.encode(value);
+		Output out = new Output(serialized.length + 1);
+		out.writeByte(SERIALIZED);
+		out.writeBytes(serialized, 0, serialized.length);
+		return out.toByteArray();
+	}
+
+	@Override
+	public Object decode(byte[] bytes) {
+		Input in = new Input(bytes);
+		byte type = in.readByte();
+		switch (type) {
+		case CUSTOMER:
+			return readCustomer(in);
+		case ADDRESS:
+			return readAddress(in);
+		case SERIALIZED:
+			return serialization.decode(Arrays.copyOfRange(bytes, 1, bytes.length));
+		default:
+			throw new IllegalArgumentException("Unknown type " + type + " of encoded value");
+		}
+	}
+
+	private static void writeCustomer(Output out, Customer customer) {
+		out.writeByte(flags(customer.getCustomerId(), customer.getVersion()));
+		out.writeLong(customer.getCustomerId());
+		out.writeLong(customer.getVersion());
+		out.writeString(customer.getName());
+		out.writeString(customer.getTelephoneNumber());
+		Address address = customer.getAddress();
+		if (address == null) {
+			out.writeByte(NO_ADDRESS);
+		} else {
+			out.writeByte(ADDRESS);
+			writeAddress(out, (Address) Hibernate.unproxy(address));
+		}
+	}
+
+	private static Customer readCustomer(Input in) {
+		Customer customer = new Customer();
+		int flags = in.readByte();
+		customer.setCustomerId(in.readLong(flags, ID));
+		customer.setVersion(in.readLong(flags, VERSION));
+		customer.setName(in.readString());
+		customer.setTelephoneNumber(in.readString());
+		byte address = in.readByte();
+		if (address == ADDRESS) {
+			customer.setAddress(readAddress(in));
+		} else if (address != NO_ADDRESS) {
+			throw new IllegalArgumentException("Unknown address " + address + " of encoded customer");
+		}
+		return customer;
+	}
+
+	private static void writeAddress(Output out, Address address) {
+		out.writeByte(flags(address.getAddressId(), address.getVersion()));
+		out.writeLong(address.getAddressId());
+		out.writeLong(address.getVersion());
+		out.writeString(address.getStreetNumber());
+		out.writeString(address.getStreetName());
+		out.writeString(address.getStreetType());
+		out.writeString(address.getSuburb());
+		out.writeString(address.getCity());
+		out.writeString(address.getCountry());
+	}
+
+	private static Address readAddress(Input in) {
+		Address address = new Address();
+		int flags = in.readByte();
+		address.setAddressId(in.readLong(flags, ID));
+		address.setVersion(in.readLong(flags, VERSION));
+		address.setStreetNumber(in.readString());
+		address.setStreetName(in.readString());
+		address.setStreetType(in.readString());
+		address.setSuburb(in.readString());
+		address.setCity(in.readString());
+		address.setCountry(in.readString());
+		return address;
+	}
+
+	private static int flags(Long id, Long version) {
+		return (id != null ? ID : 0) | (version != null ? VERSION : 0);
+	}
+
+	/**
+	 * A growable byte array, not synchronized as ByteArrayOutputStream is.
+	 */
+	private static final class Output {
+
+		private byte[] bytes;
+
+		private int length;
+
+		Output(int capacity) {
+			bytes = new byte[capacity];
+		}
+
+		void writeByte(int value) {
+			ensureCapacity(1);
+			bytes[length++] = (byte) value;
+		}
+
+		void writeBytes(byte[] value, int offset, int count) {
+			ensureCapacity(count);
+			System.arraycopy(value, offset, bytes, length, count);
+			length += count;
+		}
+
+		/**
+		 * Writes a Long which is not null, a null is only recorded in the flags.
+		 */
+		void writeLong(Long value) {
+			if (value != null) {
+				writeVarLong(value.longValue());
+			}
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void writeString(String value) {
+			if (value == null) {
+				writeVarLong(0);
+				return;
+			}
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(utf8.length + 1L);
+			writeBytes(utf8, 0, utf8.length);
+		}
+
+		byte[] toByteArray() {
+			return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+		}
+
+		private void ensureCapacity(int count) {
+			if (length + count > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+			}
+		}
+
+	}
+
+	private static final class Input {
+
+		private final byte[] bytes;
+
+		private int position;
+
+		Input(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		byte readByte() {
+			return bytes[position++];
+		}
+
+		Long readLong(int flags, int flag) {
+			return (flags & flag) != 0 ? Long.valueOf(readVarLong()) : null;
+		}
+
+		long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		String readString() {
+			int length = (int) readVarLong() - 1;
+			if (length < 0) {
+				return null;
+			}
+			String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+
+	}
+
+}
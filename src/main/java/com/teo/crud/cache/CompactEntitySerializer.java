@@ -0,0 +1,54 @@
+package com.teo.crud.cache;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * The Hazelcast serializer of the customers and addresses of the shared maps, encoded
+ * by the CompactEntityCodec instead of the java serialization. Hazelcast needs a
+ * serializer, with its own type id, per class, see HazelcastCacheConfiguration.
+ *
+ * @author teodor cotruta
+ */
+public class CompactEntitySerializer implements StreamSerializer<Object> {
+
+	/**
+	 * The type id of the serializer of the customers.
+	 */
+	public static final int CUSTOMER_TYPE_ID = 1001;
+
+	/**
+	 * The type id of the serializer of the addresses.
+	 */
+	public static final int ADDRESS_TYPE_ID = 1002;
+
+	private final CompactEntityCodec codec = new CompactEntityCodec();
+
+	private final int typeId;
+
+	/**
+	 * @param typeId the type id of the serializer, unique in the cluster
+	 */
+	public CompactEntitySerializer(int typeId) {
+		this.typeId = typeId;
+	}
+
+	@Override
+	public int getTypeId() {
+		return typeId;
+	}
+
+	@Override
+	public void write(ObjectDataOutput out, Object value) throws IOException {
+		out.writeByteArray(codec.encode(value));
+	}
+
+	@Override
+	public Object read(ObjectDataInput in) throws IOException {
+		return codec.decode(in.readByteArray());
+	}
+
+}
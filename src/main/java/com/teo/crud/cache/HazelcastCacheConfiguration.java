@@ -0,0 +1,83 @@
+package com.teo.crud.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizePolicy;
+import com.hazelcast.config.SerializerConfig;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * The configuration of the embedded Hazelcast member of the node, when the
+ * shared caches are enabled by cache.l2.enabled=true. Spring Boot starts the
+ * HazelcastInstance of this Config, and the cache manager wraps the local caches
+ * in TwoLevelCaches, see Application.cacheManager.
+ *
+ * The nodes join the members of cache.l2.members, a list of host[:port], with TCP,
+ * there is no multicast discovery. Without members, the node is a cluster of one.
+ * The shared maps, cache.<name>, are bounded by cache.l2.max-size entries per member,
+ * evicted by LRU, and expire cache.l2.time-to-live seconds after their write.
+ * The customers and addresses are sent to the other members and stored in the maps
+ * encoded by the CompactEntityCodec, see CompactEntitySerializer.
+ *
+ * @author teodor cotruta
+ */
+@Configuration
+@ConditionalOnProperty(name = "cache.l2.enabled", havingValue = "true")
+public class HazelcastCacheConfiguration {
+
+	/**
+	 * The prefix of the names of the shared maps, followed by the cache name.
+	 */
+	public static final String MAP_PREFIX = "cache.";
+
+	/**
+	 * The name of the topic of the CacheInvalidation messages.
+	 */
+	public static final String INVALIDATIONS_TOPIC = "cache.invalidations";
+
+	@Bean
+	public Config hazelcastConfig(
+			@Value("${cache.l2.cluster-name:teo-customer-crud}") String clusterName,
+			@Value("${cache.l2.port:5701}") int port,
+			@Value("${cache.l2.members:}") String members,
+			@Value("${cache.l2.max-size:100000}") int maxSize,
+			@Value("${cache.l2.time-to-live:600}") int timeToLive) {
+
+		Config config = new Config();
+		config.setClusterName(clusterName);
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		config.getNetworkConfig().setPort(port);
+		JoinConfig join = config.getNetworkConfig().getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getAutoDetectionConfig().setEnabled(false);
+		if (StringUtils.hasText(members)) {
+			join.getTcpIpConfig().setEnabled(true);
+			for (String member : StringUtils.commaDelimitedListToStringArray(members)) {
+				join.getTcpIpConfig().addMember(member.trim());
+			}
+		}
+		config.addMapConfig(new MapConfig(MAP_PREFIX + "*")
+				.setTimeToLiveSeconds(timeToLive)
+				.setEvictionConfig(new EvictionConfig()
+						.setEvictionPolicy(EvictionPolicy.LRU)
+						.setMaxSizePolicy(MaxSizePolicy.PER_NODE)
+						.setSize(maxSize)));
+		config.getSerializationConfig()
+				.addSerializerConfig(new SerializerConfig().setTypeClass(Customer.class)
+						.setImplementation(new CompactEntitySerializer(CompactEntitySerializer.CUSTOMER_TYPE_ID)))
+				.addSerializerConfig(new SerializerConfig().setTypeClass(Address.class)
+						.setImplementation(new CompactEntitySerializer(CompactEntitySerializer.ADDRESS_TYPE_ID)));
+		return config;
+	}
+
+}
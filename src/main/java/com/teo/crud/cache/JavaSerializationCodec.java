@@ -0,0 +1,32 @@
+package com.teo.crud.cache;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+/**
+ * The ValueCodec of the Serializable values, with the java serialization.
+ * The classes are resolved with the class loader of the application.
+ *
+ * @author teodor cotruta
+ */
+public class JavaSerializationCodec implements ValueCodec {
+
+	private final SerializingConverter serializer = new SerializingConverter();
+
+	private final DeserializingConverter deserializer;
+
+	public JavaSerializationCodec() {
+		this.deserializer = new DeserializingConverter(JavaSerializationCodec.class.getClassLoader());
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		return serializer.convert(value);
+	}
+
+	@Override
+	public Object decode(byte[] bytes) {
+		return deserializer.convert(bytes);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.teo.crud.cache;
+
+import java.util.concurrent.Executor;
+
+import org.springframework.cache.support.NullValue;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * A SingleFlightCaffeineCache which keeps its values encoded in an OffHeapStore.
+ *
+ * The Caffeine cache holds the keys and small handles of the values, the
+ * OffHeapStore.Entry, and the values are encoded by the ValueCodec in the store,
+ * out of the heap. A million cached customers are then a million handles on the heap
+ * instead of a million customers and addresses, with their strings, that the garbage
+ * collector has to mark or copy.
+ *
+ * The cache is bounded by bytes: the weight of an entry is the bytes of its blocks,
+ * and Caffeine evicts the least recently and frequently used entries beyond 7/8 of
+ * the capacity of the store. The rest of the store takes the entries written before
+ * the evictions. An entry evicted or replaced is freed at once, the maintenance of the
+ * cache runs on the calling thread. When the store is still full, the value is kept
+ * encoded on the heap.
+ *
+ * A get decodes a new value: two gets of a key return equal values, not the same one.
+ *
+ * @author teodor cotruta
+ */
+public class OffHeapCaffeineCache extends SingleFlightCaffeineCache {
+
+	private final OffHeapStore store;
+
+	private final ValueCodec codec;
+
+	/**
+	 * @param name the name of the cache
+	 * @param builder the Caffeine builder of the cache, without maximum size or weight
+	 * @param store the store of the values
+	 * @param codec the codec of the values
+	 * @param missing the Caffeine cache of the keys without value, see SingleFlightCaffeineCache
+	 */
+	public OffHeapCaffeineCache(String name, Caffeine<Object, Object> builder, OffHeapStore store, ValueCodec codec,
+			Cache<Object, Object> missing) {
+		super(name, build(builder, store), missing);
+		this.store = store;
+		this.codec = codec;
+	}
+
+	private static Cache<Object, Object> build(Caffeine<Object, Object> builder, final OffHeapStore store) {
+		return builder
+				.maximumWeight(store.getCapacity() - store.getCapacity() / 8)
+				.weigher(new Weigher<Object, Object>() {
+					@Override
+					public int weigh(Object key, Object value) {
+						return value instanceof OffHeapStore.Entry ? ((OffHeapStore.Entry) value).getWeight() : 1;
+					}
+				})
+				.executor(new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						command.run();
+					}
+				})
+				.removalListener(new RemovalListener<Object, Object>() {
+					@Override
+					public void onRemoval(Object key, Object value, RemovalCause cause) {
+						if (value instanceof OffHeapStore.Entry) {
+							store.free((OffHeapStore.Entry) value);
+						}
+					}
+				})
+				.build();
+	}
+
+	/**
+	 * @return the store of the values
+	 */
+	public OffHeapStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Encodes the value in the store.
+	 */
+	@Override
+	protected Object toStoreValue(Object userValue) {
+		Object storeValue = super.toStoreValue(userValue);
+		if (storeValue == NullValue.INSTANCE) {
+			return storeValue;
+		}
+		byte[] bytes = codec.encode(userValue);
+		OffHeapStore.Entry entry = store.write(bytes);
+		if (entry == null) {
+			// runs the pending evictions, which free their blocks
+			getNativeCache().cleanUp();
+			entry = store.write(bytes);
+		}
+		return entry != null ? entry : new OffHeapStore.Entry(bytes);
+	}
+
+	/**
+	 * Decodes the value of the store. An entry freed by a concurrent evict is a miss.
+	 */
+	@Override
+	protected Object lookup(Object key) {
+		Object storeValue = super.lookup(key);
+		return storeValue instanceof OffHeapStore.Entry ? decode((OffHeapStore.Entry) storeValue) : storeValue;
+	}
+
+	@Override
+	protected Object fromStoreValue(Object storeValue) {
+		if (storeValue instanceof OffHeapStore.Entry) {
+			return decode((OffHeapStore.Entry) storeValue);
+		}
+		return super.fromStoreValue(storeValue);
+	}
+
+	private Object decode(OffHeapStore.Entry entry) {
+		byte[] bytes = store.read(entry);
+		return bytes != null ? codec.decode(bytes) : null;
+	}
+
+}
@@ -0,0 +1,246 @@
+package com.teo.crud.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores byte arrays outside of the java heap, in direct buffers or in memory mapped
+ * files, so the garbage collector doesn't scan or copy them.
+ *
+ * The memory, capacity bytes allocated at once, is split in blocks of blockSize bytes.
+ * An entry takes the blocks it needs, not necessarily contiguous, so the memory is
+ * not fragmented: any free block can be used by any entry, and the memory lost by an
+ * entry is less than a block. The free blocks are tracked by a bitmap, one bit per block.
+ *
+ * The entries are written once and read many times. An entry is freed by its cache,
+ * when it is evicted or replaced: its blocks can then be reused by a next entry, and a
+ * read of the freed entry returns null. The reads run in parallel, a free waits for the
+ * reads in progress.
+ *
+ * @author teodor cotruta
+ */
+public class OffHeapStore {
+
+	/**
+	 * The maximum size of a buffer, the memory is allocated in buffers of at most this size.
+	 */
+	static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+	private final int blockSize;
+
+	private final int blockCount;
+
+	private final int blocksPerSegment;
+
+	private final ByteBuffer[] segments;
+
+	private final BitSet usedBlocks;
+
+	private int usedBlockCount;
+
+	private int nextBlock;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * @param capacity the bytes of the store
+	 * @param blockSize the bytes of a block
+	 * @param directory the directory of the memory mapped file, null for direct buffers.
+	 * 			The file is deleted once mapped, it is not kept after the application stops.
+	 * @throws IOException if the memory mapped file can't be created
+	 */
+	public OffHeapStore(long capacity, int blockSize, File directory) throws IOException {
+		if (blockSize <= 0 || capacity < blockSize || capacity / blockSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid off-heap store of " + capacity + " bytes with blocks of "
+					+ blockSize + " bytes");
+		}
+		this.blockSize = blockSize;
+		this.blockCount = (int) (capacity / blockSize);
+		this.blocksPerSegment = MAX_SEGMENT_SIZE / blockSize;
+		this.segments = new ByteBuffer[(blockCount + blocksPerSegment - 1) / blocksPerSegment];
+		this.usedBlocks = new BitSet(blockCount);
+		if (directory == null) {
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = ByteBuffer.allocateDirect(segmentSize(i));
+			}
+		} else {
+			Path file = Files.createTempFile(directory.toPath(), "offheap", ".cache");
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+			try {
+				for (int i = 0; i < segments.length; i++) {
+					segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * blocksPerSegment * blockSize,
+							segmentSize(i));
+				}
+			} finally {
+				// the mapped buffers stay valid after the channel is closed and the file is deleted
+				channel.close();
+			}
+		}
+	}
+
+	private int segmentSize(int segment) {
+		return Math.min(blocksPerSegment, blockCount - segment * blocksPerSegment) * blockSize;
+	}
+
+	/**
+	 * Copies the bytes into free blocks.
+	 *
+	 * @param bytes the bytes to store
+	 * @return the entry of the bytes, or null if there are not enough free blocks
+	 */
+	public Entry write(byte[] bytes) {
+		int[] blocks = new int[Math.max(1, (bytes.length + blockSize - 1) / blockSize)];
+		synchronized (usedBlocks) {
+			if (blockCount - usedBlockCount < blocks.length) {
+				return null;
+			}
+			int block = nextBlock;
+			for (int i = 0; i < blocks.length; i++) {
+				block = usedBlocks.nextClearBit(block);
+				if (block >= blockCount) {
+					block = usedBlocks.nextClearBit(0);
+				}
+				usedBlocks.set(block);
+				blocks[i] = block++;
+			}
+			usedBlockCount += blocks.length;
+			nextBlock = block;
+		}
+		// the blocks belong to the new entry only, they are written without lock
+		for (int i = 0; i < blocks.length; i++) {
+			int offset = i * blockSize;
+			segment(blocks[i]).put(position(blocks[i]), bytes, offset, Math.min(blockSize, bytes.length - offset));
+		}
+		return new Entry(blocks, bytes.length, blocks.length * blockSize);
+	}
+
+	/**
+	 * @param entry an entry of this store
+	 * @return a copy of the bytes of the entry, or null if the entry has been freed
+	 */
+	public byte[] read(Entry entry) {
+		if (entry.heapBytes != null) {
+			return entry.heapBytes;
+		}
+		lock.readLock().lock();
+		try {
+			if (entry.freed) {
+				return null;
+			}
+			byte[] bytes = new byte[entry.length];
+			for (int i = 0; i < entry.blocks.length; i++) {
+				int offset = i * blockSize;
+				segment(entry.blocks[i]).get(position(entry.blocks[i]), bytes, offset,
+						Math.min(blockSize, entry.length - offset));
+			}
+			return bytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Frees the blocks of the entry, once the reads in progress are done.
+	 *
+	 * @param entry an entry of this store
+	 */
+	public void free(Entry entry) {
+		if (entry.heapBytes != null) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (entry.freed) {
+				return;
+			}
+			entry.freed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		synchronized (usedBlocks) {
+			for (int block : entry.blocks) {
+				usedBlocks.clear(block);
+			}
+			usedBlockCount -= entry.blocks.length;
+		}
+	}
+
+	/**
+	 * @return the bytes of the store
+	 */
+	public long getCapacity() {
+		return (long) blockCount * blockSize;
+	}
+
+	/**
+	 * @return the bytes of the blocks used by the entries
+	 */
+	public long getUsedBytes() {
+		synchronized (usedBlocks) {
+			return (long) usedBlockCount * blockSize;
+		}
+	}
+
+	private ByteBuffer segment(int block) {
+		return segments[block / blocksPerSegment];
+	}
+
+	private int position(int block) {
+		return (block % blocksPerSegment) * blockSize;
+	}
+
+	/**
+	 * The handle of bytes stored in an OffHeapStore, kept on the heap by the cache.
+	 * An entry can also hold its bytes on the heap, when the store was full.
+	 */
+	public static final class Entry {
+
+		private final int[] blocks;
+
+		private final int length;
+
+		private final int weight;
+
+		private final byte[] heapBytes;
+
+		private boolean freed;
+
+		private Entry(int[] blocks, int length, int weight) {
+			this.blocks = blocks;
+			this.length = length;
+			this.weight = weight;
+			this.heapBytes = null;
+		}
+
+		/**
+		 * @param heapBytes the bytes, kept on the heap
+		 */
+		public Entry(byte[] heapBytes) {
+			this.blocks = null;
+			this.length = heapBytes.length;
+			this.weight = heapBytes.length;
+			this.heapBytes = heapBytes;
+		}
+
+		/**
+		 * @return the bytes taken by the entry, a multiple of the block size off the heap
+		 */
+		public int getWeight() {
+			return weight;
+		}
+
+		public boolean isOffHeap() {
+			return heapBytes == null;
+		}
+
+	}
+
+}
@@ -0,0 +1,212 @@
+package com.teo.crud.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiFunction;
+
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * A Caffeine cache which loads the concurrent misses of a key once, for
+ * the <code>@Cacheable(sync = true)</code> methods (single-flight).
+ *
+ * The first miss of a key loads the value, in its own thread and transaction,
+ * the next misses of the key wait for this load and return its value.
+ * The load runs outside of the locks of the Caffeine cache: a synchronous Caffeine
+ * compute would hold the lock of the key while the load waits for a database row,
+ * and an evict of the key, by the transaction holding the row, would wait for the load.
+ *
+ * A caller in a read-write transaction loads the value itself, without waiting
+ * for the load of another thread: it may hold the rows this load waits for.
+ * A put, an evict or a clear drops the loads in progress, their values are not
+ * cached: a load which started before the @CachePut of an update may have read
+ * the old row, it does not replace the updated value. The value of a load is cached
+ * under the lock of its entry in the loads map, so it is either cached before the
+ * load is dropped, and replaced by the put, or not cached.
+ *
+ * With a missing cache, the ids without record, the null values, are cached in it
+ * instead of in this cache: the missing cache is smaller and expires sooner, so the
+ * lookups of ids that don't exist, by scanners or stale clients, don't read the
+ * database while they can't fill this cache or keep a missing id for long.
+ * A put of a value, as the @CachePut of a create, removes the key from the
+ * missing cache, an evict or a clear removes it from both caches. A putIfAbsent
+ * does not replace a key of either cache.
+ *
+ * @author teodor cotruta
+ *
+ */
+public class SingleFlightCaffeineCache extends CaffeineCache {
+
+	private final ConcurrentMap<Object, FutureTask<Object>> loads = new ConcurrentHashMap<Object, FutureTask<Object>>();
+
+	private final Cache<Object, Object> missing;
+
+	public SingleFlightCaffeineCache(String name, Cache<Object, Object> cache) {
+		this(name, cache, null);
+	}
+
+	/**
+	 * @param name the name of the cache
+	 * @param cache the Caffeine cache of the values
+	 * @param missing the Caffeine cache of the keys without value, null to cache
+	 * 			the null values in the cache of the values
+	 */
+	public SingleFlightCaffeineCache(String name, Cache<Object, Object> cache, Cache<Object, Object> missing) {
+		super(name, cache);
+		this.missing = missing;
+	}
+
+	@Override
+	protected Object lookup(Object key) {
+		Object value = super.lookup(key);
+		if (value == null && missing != null && missing.getIfPresent(key) != null) {
+			return toStoreValue(null);
+		}
+		return value;
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		loads.remove(key);
+		store(key, value);
+	}
+
+	private void store(Object key, Object value) {
+		if (missing == null) {
+			super.put(key, value);
+		} else if (value == null) {
+			super.evict(key);
+			missing.put(key, Boolean.TRUE);
+		} else {
+			missing.invalidate(key);
+			super.put(key, value);
+		}
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+		if (missing == null) {
+			return super.putIfAbsent(key, value);
+		}
+		ValueWrapper existing = get(key);
+		if (existing != null) {
+			return existing;
+		}
+		if (value != null) {
+			return super.putIfAbsent(key, value);
+		}
+		missing.asMap().putIfAbsent(key, Boolean.TRUE);
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, final Callable<T> valueLoader) {
+		ValueWrapper cached = get(key);
+		if (cached != null) {
+			return (T) cached.get();
+		}
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return load(key, valueLoader);
+		}
+		FutureTask<Object> load = new FutureTask<Object>(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return valueLoader.call();
+			}
+		});
+		FutureTask<Object> inFlight = loads.putIfAbsent(key, load);
+		if (inFlight == null) {
+			inFlight = load;
+			load.run();
+			try {
+				final Object value = load.get();
+				// cached before the load is dropped, so no miss comes in between,
+				// and not cached if a put, evict or clear dropped the load
+				loads.computeIfPresent(key, new BiFunction<Object, FutureTask<Object>, FutureTask<Object>>() {
+					@Override
+					public FutureTask<Object> apply(Object k, FutureTask<Object> current) {
+						if (current == load) {
+							store(k, value);
+							return null;
+						}
+						return current;
+					}
+				});
+			} catch (ExecutionException | InterruptedException e) {
+				// the failure is thrown below, nothing is cached
+				loads.remove(key, load);
+			}
+		}
+		try {
+			return (T) inFlight.get();
+		} catch (ExecutionException e) {
+			throw new ValueRetrievalException(key, valueLoader, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ValueRetrievalException(key, valueLoader, e);
+		}
+	}
+
+	/**
+	 * Loads and caches the value, without the locks of the Caffeine cache.
+	 */
+	private <T> T load(Object key, Callable<T> valueLoader) {
+		T value;
+		try {
+			value = valueLoader.call();
+		} catch (Exception e) {
+			throw new ValueRetrievalException(key, valueLoader, e);
+		}
+		put(key, value);
+		return value;
+	}
+
+	@Override
+	public void evict(Object key) {
+		loads.remove(key);
+		evictValue(key);
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		loads.remove(key);
+		boolean evicted = missing != null && missing.asMap().remove(key) != null;
+		return super.evictIfPresent(key) || evicted;
+	}
+
+	@Override
+	public void clear() {
+		loads.clear();
+		if (missing != null) {
+			missing.invalidateAll();
+		}
+		super.clear();
+	}
+
+	@Override
+	public boolean invalidate() {
+		loads.clear();
+		boolean notEmpty = false;
+		if (missing != null) {
+			notEmpty = !missing.asMap().isEmpty();
+			missing.invalidateAll();
+		}
+		return super.invalidate() || notEmpty;
+	}
+
+	private void evictValue(Object key) {
+		super.evict(key);
+		if (missing != null) {
+			missing.invalidate(key);
+		}
+	}
+
+}
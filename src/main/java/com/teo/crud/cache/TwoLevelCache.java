@@ -0,0 +1,220 @@
+package com.teo.crud.cache;
+
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import com.hazelcast.map.IMap;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import com.hazelcast.topic.MessageListener;
+
+/**
+ * A cache of a node of a cluster, with two levels: the local cache of the node (L1)
+ * and, optionally, a Hazelcast map shared by the nodes (L2).
+ *
+ * A get reads the local cache, then the shared map, and keeps a value found in the
+ * shared map in the local cache. A value loaded by a miss, or filled with putIfAbsent,
+ * is put in both unless they have one: it was read from the database, the other
+ * nodes have the same value or a newer one, they are not told.
+ * The writes, each put, as the @CachePut of a create or update, evict or clear, are
+ * done in both, and sent to the other nodes on the invalidations topic: the other
+ * nodes evict the key, or clear the cache, from their local cache, so their next get
+ * reads the shared map or the database again. A customer deleted on one node is no
+ * longer read from the local cache of another one.
+ *
+ * The null values, the ids without record, are not shared, they stay in the local
+ * cache. The messages are delivered asynchronously: another node can read its stale
+ * local value until its message arrives.
+ *
+ * @author teodor cotruta
+ *
+ */
+public class TwoLevelCache implements Cache, MessageListener<CacheInvalidation> {
+
+	private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
+
+	private final Cache local;
+
+	private final IMap<Object, Object> shared;
+
+	private final ITopic<CacheInvalidation> invalidations;
+
+	private final String node;
+
+	/**
+	 * @param local the local cache of the node
+	 * @param shared the map shared by the nodes, null for a cache which is only
+	 * 			invalidated on the other nodes
+	 * @param invalidations the topic of the invalidation messages of the caches
+	 * @param node the id of this node, its messages are not applied to its own cache
+	 */
+	public TwoLevelCache(Cache local, IMap<Object, Object> shared, ITopic<CacheInvalidation> invalidations,
+			String node) {
+		this.local = local;
+		this.shared = shared;
+		this.invalidations = invalidations;
+		this.node = node;
+		invalidations.addMessageListener(this);
+	}
+
+	@Override
+	public String getName() {
+		return local.getName();
+	}
+
+	/**
+	 * @return the native cache of the local cache, so its statistics are the
+	 * 			statistics of the cache
+	 */
+	@Override
+	public Object getNativeCache() {
+		return local.getNativeCache();
+	}
+
+	@Override
+	public ValueWrapper get(Object key) {
+		ValueWrapper value = local.get(key);
+		if (value == null && shared != null) {
+			Object sharedValue = shared.get(key);
+			if (sharedValue != null) {
+				local.put(key, sharedValue);
+				value = new SimpleValueWrapper(sharedValue);
+			}
+		}
+		return value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Class<T> type) {
+		ValueWrapper value = get(key);
+		Object object = value != null ? value.get() : null;
+		if (object != null && type != null && !type.isInstance(object)) {
+			throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + object);
+		}
+		return (T) object;
+	}
+
+	/**
+	 * Reads the local cache, then the shared map. On a miss of both, the local cache
+	 * loads the value, see SingleFlightCaffeineCache, and the value is put in the shared
+	 * map unless another node has put one first.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		ValueWrapper value = get(key);
+		if (value != null) {
+			return (T) value.get();
+		}
+		if (shared == null) {
+			return local.get(key, valueLoader);
+		}
+		return local.get(key, new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				T loaded = valueLoader.call();
+				if (loaded != null) {
+					shared.putIfAbsent(key, loaded);
+				}
+				return loaded;
+			}
+		});
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		local.put(key, value);
+		if (shared != null) {
+			if (value != null) {
+				shared.set(key, value);
+			} else {
+				shared.delete(key);
+			}
+		}
+		publish(key);
+	}
+
+	/**
+	 * Fills the caches with a value read from the database, as the get with a value
+	 * loader: the value is put in the local cache and in the shared map unless they
+	 * have one, and no invalidation is sent.
+	 */
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+		ValueWrapper existing = get(key);
+		if (existing != null) {
+			return existing;
+		}
+		existing = local.putIfAbsent(key, value);
+		if (existing == null && shared != null && value != null) {
+			shared.putIfAbsent(key, value);
+		}
+		return existing;
+	}
+
+	@Override
+	public void evict(Object key) {
+		local.evict(key);
+		if (shared != null) {
+			shared.delete(key);
+		}
+		publish(key);
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		boolean evicted = local.evictIfPresent(key);
+		if (shared != null) {
+			evicted = shared.remove(key) != null || evicted;
+		}
+		publish(key);
+		return evicted;
+	}
+
+	@Override
+	public void clear() {
+		local.clear();
+		if (shared != null) {
+			shared.clear();
+		}
+		publish(null);
+	}
+
+	@Override
+	public boolean invalidate() {
+		boolean invalidated = local.invalidate();
+		if (shared != null) {
+			invalidated = !shared.isEmpty() || invalidated;
+			shared.clear();
+		}
+		publish(null);
+		return invalidated;
+	}
+
+	/**
+	 * Evicts the key, or clears, the local cache for a message of another node.
+	 */
+	@Override
+	public void onMessage(Message<CacheInvalidation> message) {
+		CacheInvalidation invalidation = message.getMessageObject();
+		if (node.equals(invalidation.getNode()) || !getName().equals(invalidation.getCacheName())) {
+			return;
+		}
+		logger.debug("Received {}", invalidation);
+		if (invalidation.isClear()) {
+			local.clear();
+		} else {
+			local.evict(invalidation.getKey());
+		}
+	}
+
+	private void publish(Object key) {
+		invalidations.publish(new CacheInvalidation(node, getName(), key));
+	}
+
+}
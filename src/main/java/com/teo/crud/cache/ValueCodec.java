@@ -0,0 +1,23 @@
+package com.teo.crud.cache;
+
+/**
+ * Encodes the values of a cache to bytes, and decodes them, for the caches
+ * which keep their values serialized, as OffHeapCaffeineCache.
+ *
+ * @author teodor cotruta
+ */
+public interface ValueCodec {
+
+	/**
+	 * @param value the value to encode, not null
+	 * @return the bytes of the value
+	 */
+	byte[] encode(Object value);
+
+	/**
+	 * @param bytes the bytes returned by encode
+	 * @return a new value, equal to the encoded value
+	 */
+	Object decode(byte[] bytes);
+
+}
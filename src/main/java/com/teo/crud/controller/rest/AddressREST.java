@@ -3,18 +3,29 @@ package com.teo.crud.controller.rest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.teo.crud.data.model.Address;
 import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.EntityCallback;
 import com.teo.crud.data.service.exception.AddressAlreadyExistsException;
 
-import javax.validation.Valid;
+import jakarta.persistence.NoResultException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * This class provides a rest controller for the REST services 
@@ -22,6 +33,10 @@ import java.util.Collection;
  * The main paths are:
  * 
  * "/address" to read all the records using a GET
+ * "/address?ids={id},{id},..." to read the records of a list of ids using a GET
+ * "/address/export" to stream all the records as newline delimited json using a GET
+ * "/address/stream" to stream all the records as newline delimited json, without 
+ * 		holding a thread or a connection for a slow client, using a GET
  * "/address/{id}" to read one record using a GET
  * "/address" to create a record using POST
  * "/address/{id}" to update the records using PUT
@@ -40,6 +55,38 @@ public class AddressREST {
     @Autowired
     private AddressService addressService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The media type of the export: one json document per line.
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * The number of addresses written to the export before the response is flushed.
+     */
+    @Value("${address.export.flush-size:500}")
+    private int exportFlushSize;
+
+    /**
+     * The number of addresses read from the database for each page of getAddressStream.
+     */
+    @Value("${address.stream.page-size:500}")
+    private int streamPageSize;
+
+    /**
+     * The milliseconds before a stream of getAddressStream is stopped.
+     */
+    @Value("${stream.request-timeout:600000}")
+    private long streamTimeout;
+
+    /**
+     * The maximum number of ids a client can ask for with the ids parameter.
+     */
+    @Value("${ids.max-size:1000}")
+    private int maxIds;
+
     /**
      * Read all addresses with a GET
      * 
@@ -54,38 +101,144 @@ public class AddressREST {
     		method = RequestMethod.GET, 
     		produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Collection<Address>> getAddresses() {
-        logger.info("Start getAddresses");
-
         Collection<Address> addresses = addressService.readAll();
-
-        logger.info("End getAddresses");
         return new ResponseEntity<Collection<Address>>(addresses,HttpStatus.OK);
     }
 
+    /**
+     * Read the addresses of a list of ids with one GET, instead of one GET per address.
+     * The addresses in the cache are not read again, the others are read with 
+     * one query, see AddressService.readByIds.
+     * 
+	 * Example:
+	 * shell> curl "localhost:8080/address?ids=2,1"
+     *
+     * @param ids the addressIds, at most ids.max-size of them
+     * @return a json array of the addresses, in the order of the ids, and http status 200.
+     * 			The ids which don't exist are left out.
+     * 			Http status 400 if there are no ids or too many.
+     */
+    @RequestMapping(
+    		value = "/address",
+    		params = "ids",
+    		method = RequestMethod.GET, 
+    		produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Address>> getAddressesByIds(@RequestParam("ids") List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > maxIds || ids.contains(null)) {
+            return new ResponseEntity<List<Address>>(HttpStatus.BAD_REQUEST);
+        }
+        List<Address> addresses = addressService.readByIds(ids);
+        return new ResponseEntity<List<Address>>(addresses, HttpStatus.OK);
+    }
+
+    /**
+     * Export all addresses with a GET as newline delimited json (ndjson):
+     * one json address per line, ordered by addressId.
+     * 
+     * The addresses are read from the database with a forward only cursor and 
+     * written to the response as they are read, so the export of the full table
+     * runs in constant memory. The response is flushed every address.export.flush-size
+     * addresses.
+     * 
+	 * Example:
+	 * shell> curl localhost:8080/address/export
+	 * {"addressId":1,"city":"AUCKLAND","country":"NEW ZEALAND","streetName":"BIG STREET","streetNumber":"2/34","streetType":"AVENUE","suburb":"NEW MARKET"}
+	 * {"addressId":2,"city":"AUCKLAND","country":"NEW ZEALAND","streetName":"SINGLEVIEW","streetNumber":"5","streetType":"STREET","suburb":"TAKAPUNA"}
+	 * ...
+     *
+     * @param response the http response the addresses are streamed to with http status 200
+     * @throws IOException if the response can't be written
+     */
+    @RequestMapping(
+    		value = "/address/export",
+    		method = RequestMethod.GET, 
+    		produces = APPLICATION_NDJSON_VALUE)
+    public void exportAddresses(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        final ServletOutputStream out = response.getOutputStream();
+        long count = addressService.exportAll(new EntityCallback<Address>() {
+
+        	private long written = 0;
+
+        	@Override
+        	public void process(Address address) throws IOException {
+        		out.write(objectMapper.writeValueAsBytes(address));
+        		out.write('\n');
+        		if (++written % exportFlushSize == 0) {
+        			out.flush();
+        		}
+        	}
+        });
+        out.flush();
+        logger.debug("Exported {} addresses", count);
+    }
+
+    /**
+     * Stream all addresses with a GET, as newline delimited json, like exportAddresses.
+     * 
+     * The export holds a thread and a database cursor until the client has read 
+     * the last address. This stream doesn't: the addresses are written with the 
+     * non-blocking output of the servlet container, and a page of address.stream.page-size 
+     * addresses is read, in its own transaction, only when the client has taken 
+     * the previous one, see PagedJsonStream.
+     * 
+	 * Example:
+	 * shell> curl localhost:8080/address/stream
+     *
+     * @param request the http request, which is put in async mode
+     * @param response the http response the addresses are streamed to with http status 200
+     * @throws IOException if the response can't be written
+     */
+    @RequestMapping(
+    		value = "/address/stream",
+    		method = RequestMethod.GET, 
+    		produces = APPLICATION_NDJSON_VALUE)
+    public void getAddressStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        new PagedJsonStream<Address>(request.startAsync(), objectMapper.writer(), streamPageSize, streamTimeout) {
+        	@Override
+        	protected List<Address> readPage(Address last, int pageSize) {
+        		return addressService.readPage(last == null ? null : last.getAddressId(), pageSize);
+        	}
+        }.start();
+    }
+
     /**
      * Searches an address having the addressId = id 
+     * The response has an ETag built from the address version, see ETags.
+     * If the request has an If-None-Match header with this ETag, the response is 
+     * empty with HTTP status 304 and the address is not serialized.
+     * 
 	 * Example searching for address with addressId = 1:
 	 * shell> curl localhost:8080/address/1
+	 * shell> curl -H "If-None-Match: \"0\"" localhost:8080/address/1
 	 * 
      * @param id for the address to GET
+     * @param ifNoneMatch the ETags the client already has, if any
      * 
      * @return a json representation of the address found and HTTP status 200
+     * 			or empty if the address has not changed and HTTP status 304
      * 			or empty if the address is not found and HTTP status 404
      */
     @RequestMapping(
             value = "/address/{id}",
             method = RequestMethod.GET,
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Address> getAddress(@PathVariable("id") Long id) {
-        logger.info("Start getAddress id:{}", id);
-
+    public ResponseEntity<Address> getAddress(@PathVariable("id") Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         Address address = addressService.read(id);
         if (address == null) {
             return new ResponseEntity<Address>(HttpStatus.NOT_FOUND);
         }
-
-        logger.info("End getAddress id:{}", id);
-        return new ResponseEntity<Address>(address, HttpStatus.OK);
+        String eTag = ETags.of(address);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return new ResponseEntity<Address>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        return new ResponseEntity<Address>(address, headers, HttpStatus.OK);
     }
 
     /**
@@ -116,11 +269,7 @@ public class AddressREST {
             produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Address> createAddress(
             @RequestBody Address address) {
-        logger.info("Start createAddress");
-
         Address createdAddress = addressService.create(address);
-
-        logger.info("End createAddress");
         return new ResponseEntity<Address>(createdAddress, HttpStatus.CREATED);
     }
 
@@ -133,21 +282,41 @@ public class AddressREST {
 	 * which returns the updated address:
 	 * shell> {"addressId":6,"city":"Takapuna","country":"New Zealand","streetName":"Long Street","streetNumber":"33a","streetType":"street","suburb":null}
      * Note: escapes may not be required on UNIX or is you use Postman or SoapUI.
+     * With an If-Match header, the address is updated only if its current version 
+     * is the version of the ETag, otherwise the response is empty with HTTP status 412.
+     * The version of the ETag replaces the version of the json, and the versioned 
+     * update statement checks it. "*" updates the current version of an existing address,
+     * whatever the version of the json.
+     * If the address has been updated since the version in the json was read, 
+     * the response is HTTP status 409.
      * 
      * @param address
-     * @return
+     * @param ifMatch the ETags the client expects the address to have, if any
+     * @return the updated address 
+     * 			or empty with HTTP status 412 if the address has changed or doesn't exist
      */
     @RequestMapping(value = "/address", method = RequestMethod.PUT)
-    public ResponseEntity<Address> updateAddress(@RequestBody @Valid final Address address) {
-        logger.info("Start updateAddress id:{}", address.getAddressId());
+    public ResponseEntity<Address> updateAddress(@RequestBody @Valid final Address address,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch != null) {
+            // null for "*": the update reads the current version
+            address.setVersion(ETags.version(ifMatch));
+        }
 
-        Address updatedAddress = addressService.update(address);
+        Address updatedAddress;
+        try {
+            updatedAddress = addressService.update(address);
+        } catch (OptimisticLockingFailureException | NoResultException e) {
+            if (ifMatch == null) {
+                throw e;
+            }
+            logger.debug("Precondition failed: {}", e.getMessage());
+            return new ResponseEntity<Address>(HttpStatus.PRECONDITION_FAILED);
+        }
         if (updatedAddress == null) {
             return new ResponseEntity<Address>(
                     HttpStatus.INTERNAL_SERVER_ERROR);
         }
-
-        logger.info("End updateAddress id:{}", address.getAddressId());
         return new ResponseEntity<Address>(updatedAddress, HttpStatus.OK);
     }
 
@@ -173,11 +342,7 @@ public class AddressREST {
             method = RequestMethod.DELETE)
     public ResponseEntity<Address> deleteAddress(
             @PathVariable("id") Long id) {
-        logger.info("Start deleteAddress id:{}", id);
-
         addressService.delete(id);
-
-        logger.info("End deleteAddress id:{}", id);
         return new ResponseEntity<Address>(HttpStatus.NO_CONTENT);
     }
 
@@ -199,4 +364,18 @@ public class AddressREST {
         return e.getMessage();
     }
 
+    /**
+     * An update of an address which has been updated by another request
+     * since the client read it. The client should read the address again.
+     * 
+     * @param e the optimistic locking failure of the update
+     * @return a String with the error message and HTTP status 409
+     */
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+        logger.debug("Conflict: {}", e.getMessage());
+        return e.getMessage();
+    }
+
 }
@@ -0,0 +1,174 @@
+package com.teo.crud.controller.rest;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+import jakarta.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.teo.crud.async.BoundedExecutor;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.service.exception.AddressAlreadyExistsException;
+
+/**
+ * This class provides the async variants of the address REST services:
+ * the same requests and answers as AddressREST, under "/async".
+ * The main paths are:
+ * 
+ * "/async/address" to read all the records using a GET
+ * "/async/address/{id}" to read one record using a GET
+ * "/async/address" to create a record using POST
+ * "/async/address" to update a record using PUT
+ * "/async/address/{id}" to delete a record with DELETE
+ * 
+ * The work of each request runs on the threads of the BoundedExecutor, 
+ * so the servlet thread is released while the database works.
+ * When the executor is saturated, the request is answered at once with 
+ * HTTP status 503 and a Retry-After header.
+ * 
+ * @author teodor cotruta
+ */
+@RestController
+public class AsyncAddressREST {
+
+    @Autowired
+    private AddressREST addressREST;
+
+    @Autowired
+    private BoundedExecutor executor;
+
+    /**
+     * Read all addresses, see AddressREST.getAddresses
+     * 
+     * @return the result of AddressREST.getAddresses or empty with HTTP status 503
+     */
+    @RequestMapping(
+            value = "/async/address",
+            method = RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Collection<Address>>> getAddresses() {
+        return executor.submit(new Callable<ResponseEntity<Collection<Address>>>() {
+            @Override
+            public ResponseEntity<Collection<Address>> call() {
+                return addressREST.getAddresses();
+            }
+        });
+    }
+
+    /**
+     * Read an address, see AddressREST.getAddress
+     * 
+     * @param id of the address to read
+     * @param ifNoneMatch the ETags of the address the client already has, if any
+     * @return the result of AddressREST.getAddress or empty with HTTP status 503
+     */
+    @RequestMapping(
+            value = "/async/address/{id}",
+            method = RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Address>> getAddress(@PathVariable("id") final Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+        return executor.submit(new Callable<ResponseEntity<Address>>() {
+            @Override
+            public ResponseEntity<Address> call() {
+                return addressREST.getAddress(id, ifNoneMatch);
+            }
+        });
+    }
+
+    /**
+     * Create an address, see AddressREST.createAddress
+     * 
+     * @param address to be created
+     * @return the result of AddressREST.createAddress or empty with HTTP status 503
+     */
+    @RequestMapping(
+            value = "/async/address",
+            method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Address>> createAddress(@RequestBody final Address address) {
+        return executor.submit(new Callable<ResponseEntity<Address>>() {
+            @Override
+            public ResponseEntity<Address> call() {
+                return addressREST.createAddress(address);
+            }
+        });
+    }
+
+    /**
+     * Update an address, see AddressREST.updateAddress
+     * 
+     * @param address to be updated
+     * @param ifMatch the ETags the client expects the address to have, if any
+     * @return the result of AddressREST.updateAddress or empty with HTTP status 503
+     */
+    @RequestMapping(value = "/async/address", method = RequestMethod.PUT)
+    public DeferredResult<ResponseEntity<Address>> updateAddress(@RequestBody @Valid final Address address,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+        return executor.submit(new Callable<ResponseEntity<Address>>() {
+            @Override
+            public ResponseEntity<Address> call() {
+                return addressREST.updateAddress(address, ifMatch);
+            }
+        });
+    }
+
+    /**
+     * Delete an address, see AddressREST.deleteAddress
+     * 
+     * @param id of the address to be deleted
+     * @return the result of AddressREST.deleteAddress or empty with HTTP status 503
+     */
+    @RequestMapping(
+            value = "/async/address/{id}",
+            method = RequestMethod.DELETE)
+    public DeferredResult<ResponseEntity<Address>> deleteAddress(@PathVariable("id") final Long id) {
+        return executor.submit(new Callable<ResponseEntity<Address>>() {
+            @Override
+            public ResponseEntity<Address> call() {
+                return addressREST.deleteAddress(id);
+            }
+        });
+    }
+
+    /**
+     * As AddressREST.handleAddressAlreadyExistsException
+     * 
+     * @param e
+     * @return a String with the error message and HTTP status 409
+     */
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String handleAddressAlreadyExistsException(AddressAlreadyExistsException e) {
+        return addressREST.handleAddressAlreadyExistsException(e);
+    }
+
+    /**
+     * As AddressREST.handleOptimisticLockingFailureException
+     * 
+     * @param e the optimistic locking failure of the update
+     * @return a String with the error message and HTTP status 409
+     */
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+        return addressREST.handleOptimisticLockingFailureException(e);
+    }
+
+}
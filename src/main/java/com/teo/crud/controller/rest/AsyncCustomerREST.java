@@ -0,0 +1,171 @@
+package com.teo.crud.controller.rest;
+
+import java.util.concurrent.Callable;
+
+import jakarta.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.teo.crud.async.BoundedExecutor;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.service.exception.CustomerAlreadyExistsException;
+
+/**
+ * This class provides the async variants of the customer REST services:
+ * the same requests and answers as CustomerREST, under "/async".
+ * The main paths are:
+ * 
+ * "/async/customer?afterId={id}&limit={n}" to read a page of records using a GET
+ * "/async/customer/{id}" to read one record using a GET
+ * "/async/customer" to create a record using POST
+ * "/async/customer" to update a record using PUT
+ * "/async/customer/{id}" to delete a record with DELETE
+ * 
+ * The work of each request runs on the threads of the BoundedExecutor, 
+ * so the servlet thread is released while the database works.
+ * When the executor is saturated, the request is answered at once with 
+ * HTTP status 503 and a Retry-After header.
+ * 
+ * @author teodor cotruta
+ */
+@RestController
+public class AsyncCustomerREST {
+
+	@Autowired
+	private CustomerREST customerREST;
+
+	@Autowired
+	private BoundedExecutor executor;
+
+	/**
+	 * Read a page of customers, see CustomerREST.getCustomersPage
+	 * 
+	 * @param afterId the last customerId of the previous page, none for the first page
+	 * @param limit the maximum number of customers of the page
+	 * @param expand "address" to include the address of each customer
+	 * @return the result of CustomerREST.getCustomersPage or empty with HTTP status 503
+	 */
+	@RequestMapping(value = "/async/customer", params = "limit", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<MappingJacksonValue>> getCustomersPage(
+			@RequestParam(value = "afterId", required = false) final Long afterId,
+			@RequestParam("limit") final int limit,
+			@RequestParam(value = "expand", required = false) final String expand) {
+		return executor.submit(new Callable<ResponseEntity<MappingJacksonValue>>() {
+			@Override
+			public ResponseEntity<MappingJacksonValue> call() {
+				return customerREST.getCustomersPage(afterId, limit, expand);
+			}
+		});
+	}
+
+	/**
+	 * Read a customer, see CustomerREST.getCustomer
+	 * 
+	 * @param id of the customer to read
+	 * @param expand "address" to include the address of the customer
+	 * @param ifNoneMatch the ETags of the customer the client already has, if any
+	 * @return the result of CustomerREST.getCustomer or empty with HTTP status 503
+	 */
+	@RequestMapping(value = "/async/customer/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<byte[]>> getCustomer(@PathVariable("id") final Long id,
+			@RequestParam(value = "expand", required = false) final String expand,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+		return executor.submit(new Callable<ResponseEntity<byte[]>>() {
+			@Override
+			public ResponseEntity<byte[]> call() throws Exception {
+				return customerREST.getCustomer(id, expand, ifNoneMatch);
+			}
+		});
+	}
+
+	/**
+	 * Create a customer, see CustomerREST.createCustomer
+	 * 
+	 * @param customer to be created
+	 * @return the result of CustomerREST.createCustomer or empty with HTTP status 503
+	 */
+	@RequestMapping(value = "/async/customer", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<Customer>> createCustomer(@RequestBody final Customer customer) {
+		return executor.submit(new Callable<ResponseEntity<Customer>>() {
+			@Override
+			public ResponseEntity<Customer> call() {
+				return customerREST.createCustomer(customer);
+			}
+		});
+	}
+
+	/**
+	 * Update a customer, see CustomerREST.updateCustomer
+	 * 
+	 * @param customer to be updated
+	 * @param ifMatch the ETags the client expects the customer to have, if any
+	 * @return the result of CustomerREST.updateCustomer or empty with HTTP status 503
+	 */
+	@RequestMapping(value = "/async/customer", method = RequestMethod.PUT)
+	public DeferredResult<ResponseEntity<Customer>> updateCustomer(@RequestBody @Valid final Customer customer,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+		return executor.submit(new Callable<ResponseEntity<Customer>>() {
+			@Override
+			public ResponseEntity<Customer> call() {
+				return customerREST.updateCustomer(customer, ifMatch);
+			}
+		});
+	}
+
+	/**
+	 * Delete a customer, see CustomerREST.deleteCustomer
+	 * 
+	 * @param id of the customer to be deleted
+	 * @return the result of CustomerREST.deleteCustomer or empty with HTTP status 503
+	 */
+	@RequestMapping(value = "/async/customer/{id}", method = RequestMethod.DELETE)
+	public DeferredResult<ResponseEntity<Customer>> deleteCustomer(@PathVariable("id") final Long id) {
+		return executor.submit(new Callable<ResponseEntity<Customer>>() {
+			@Override
+			public ResponseEntity<Customer> call() {
+				return customerREST.deleteCustomer(id);
+			}
+		});
+	}
+
+	/**
+	 * As CustomerREST.handleCustomerAlreadyExistsException
+	 * 
+	 * @param e
+	 * @return a String with the error message and HTTP status 409
+	 */
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public String handleCustomerAlreadyExistsException(CustomerAlreadyExistsException e) {
+		return customerREST.handleCustomerAlreadyExistsException(e);
+	}
+
+	/**
+	 * As CustomerREST.handleOptimisticLockingFailureException
+	 * 
+	 * @param e the optimistic locking failure of the update
+	 * @return a String with the error message and HTTP status 409
+	 */
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public String handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+		return customerREST.handleOptimisticLockingFailureException(e);
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.teo.crud.controller.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class provides a rest controller for the statistics
+ * of the caches used by the customer and address services.
+ * The main paths are:
+ *
+ * "/cache/stats" to read the statistics of all the caches using a GET
+ *
+ * @author teodor cotruta
+ */
+@RestController
+public class CacheREST {
+
+    /**
+     * The cache manager holding the customers and addresses caches.
+     */
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Read the statistics of all caches with a GET
+     * The counts are only recorded for caches with recordStats in their cache.<name>.spec.
+     *
+	 * Example:
+	 * shell> curl localhost:8080/cache/stats
+	 * {"addresses":{"size":2,"requestCount":3,"hitCount":1,"missCount":2,"hitRate":0.3333333333333333,"evictionCount":0},
+	 *  "customers":{...}}
+     *
+     * @return a json object with the statistics of each cache, by cache name, and HTTP status 200
+     */
+    @RequestMapping(
+    		value = "/cache/stats",
+    		method = RequestMethod.GET,
+    		produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheStats() {
+
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<String, Map<String, Object>>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache) {
+                stats.put(name, toMap((com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache()));
+            }
+        }
+
+        return new ResponseEntity<Map<String, Map<String, Object>>>(stats, HttpStatus.OK);
+    }
+
+    private static Map<String, Object> toMap(com.github.benmanes.caffeine.cache.Cache<?, ?> cache) {
+        CacheStats cacheStats = cache.stats();
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("size", cache.estimatedSize());
+        stats.put("requestCount", cacheStats.requestCount());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+}
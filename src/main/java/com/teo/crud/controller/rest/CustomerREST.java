@@ -3,18 +3,35 @@ package com.teo.crud.controller.rest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.teo.crud.data.model.Address;
 import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.model.JsonViews;
 import com.teo.crud.data.service.AddressService;
 import com.teo.crud.data.service.CustomerService;
 import com.teo.crud.data.service.exception.CustomerAlreadyExistsException;
-import javax.validation.Valid;
+import jakarta.persistence.NoResultException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * This class provides a rest controller for the REST services 
@@ -22,18 +39,30 @@ import java.util.Collection;
  * 
  * The main paths are:
  * "/customer" to read all the customer records using a GET method
+ * "/customer?afterId={id}&limit={limit}" to read one page of customer records using a GET method
+ * "/customer?ids={id},{id},..." to read the customer records of a list of ids using a GET method
+ * "/customer/stream" to stream all the customer records as newline delimited json using a GET method
  * "/customer/{id}" to read one record using a GET
  * "/customer" to create a new customer record using POST
+ * "/customer/batch" to create many customer records using POST
  * "/customer/{customerId}/address/{addressId}" to PUT update the address of a customer
  * "/customer/{id}" to update a record using PUT. 
  * "/customer/{id}" to delete a record with DELETE
  * 
+ * The GET paths write the customers without their address, unless the request 
+ * has the expand=address parameter. For example "/customer/{id}?expand=address".
+ * 
  * @author teodor cotruta
  */
 @RestController
 public class CustomerREST {
 
 	private static final Logger logger = LoggerFactory.getLogger(CustomerREST.class);
+
+	/**
+	 * The value of the expand request parameter to read the customers with their address.
+	 */
+	public static final String EXPAND_ADDRESS = "address";
 	/**
 	 * The CustomerService service.
 	 */
@@ -43,47 +72,236 @@ public class CustomerREST {
 	@Autowired
 	private AddressService addressService;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The name of the cache of the json bytes written by getCustomer, by customerId.
+	 */
+	public static final String JSON_CACHE = "customerJson";
+
+	/**
+	 * True to cache the json bytes written by getCustomer without the address.
+	 */
+	@Value("${customer.json-cache.enabled:true}")
+	private boolean jsonCacheEnabled;
+
+	/**
+	 * The number of customers read from the database for each chunk 
+	 * written by getCustomers.
+	 */
+	@Value("${customer.stream.page-size:500}")
+	private int streamPageSize;
+
+	/**
+	 * The milliseconds before a stream of getCustomerStream is stopped.
+	 */
+	@Value("${stream.request-timeout:600000}")
+	private long streamTimeout;
+
+	/**
+	 * The maximum number of customers which can be created with one POST on /customer/batch.
+	 */
+	@Value("${customer.batch.max-size:10000}")
+	private int maxBatchSize;
+
+	/**
+	 * The maximum page size a client can ask for with the limit parameter.
+	 */
+	@Value("${customer.page.max-limit:1000}")
+	private int maxPageLimit;
+
+	/**
+	 * The maximum number of ids a client can ask for with the ids parameter.
+	 */
+	@Value("${ids.max-size:1000}")
+	private int maxIds;
+
     /**
      * Read all customer with a GET
+     * 
+     * The customers are not loaded all at once. They are read from the database
+     * in pages of customer.stream.page-size records, using keyset pagination, 
+     * and each page is written to the response before the next one is read.
+     * The customers of a page are detached from the persistence context of the 
+     * request once read, see CustomerService.readPage.
+     * The response is sent chunked, so the memory used does not depend on the 
+     * number of customers in the database.
      * 
 	 * Example:
 	 * shell> curl localhost:8080/customer
+	 * shell> curl localhost:8080/customer?expand=address
      *
-     * @return a json array of customers and http status 200
-     * 			This can be empty, if there is no customer in the database. 
+     * @param expand "address" to write the customers with their address
+     * @param response the http response the json array is streamed to 
+     * 			with http status 200. The array can be empty, 
+     * 			if there is no customer in the database. 
+     * @throws IOException if the response can't be written
      */
 	@RequestMapping(value = "/customer", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Collection<Customer>> getCustomers() {
-		logger.info("Start getCustomers");
+	public void getCustomers(@RequestParam(value = "expand", required = false) String expand,
+			HttpServletResponse response) throws IOException {
+		boolean withAddress = EXPAND_ADDRESS.equals(expand);
+		ObjectWriter writer = objectMapper.writerWithView(view(withAddress));
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(
+				response.getOutputStream(), JsonEncoding.UTF8);
+		generator.writeStartArray();
+		Long afterId = null;
+		List<Customer> customers;
+		do {
+			customers = customerService.readPage(afterId, streamPageSize, withAddress);
+			for (Customer customer : customers) {
+				writer.writeValue(generator, customer);
+				afterId = customer.getCustomerId();
+			}
+			generator.flush();
+		} while (customers.size() == streamPageSize);
+		generator.writeEndArray();
+		generator.close();
+	}
+
+    /**
+     * Stream all customers with a GET, as newline delimited json: one customer per line.
+     * 
+     * Unlike getCustomers, the request doesn't hold a thread nor a database connection
+     * while the client reads the response. The customers are written with the 
+     * non-blocking output of the servlet container, and a page of customer.stream.page-size 
+     * customers is read only when the client has taken the previous one, see PagedJsonStream.
+     * A slow client slows the reads down, and the memory used by the stream is one page.
+     * 
+	 * Example:
+	 * shell> curl localhost:8080/customer/stream
+	 * {"customerId":1,"name":"JOHN SMITH","telephoneNumber":"09 4444444","version":0}
+	 * {"customerId":2,"name":"JANE SMITH","telephoneNumber":"09 4444445","version":0}
+	 * ...
+	 * shell> curl localhost:8080/customer/stream?expand=address
+     *
+     * @param expand "address" to write the customers with their address
+     * @param request the http request, which is put in async mode
+     * @param response the http response the customers are streamed to with http status 200
+     * @throws IOException if the response can't be written
+     */
+	@RequestMapping(value = "/customer/stream", method = RequestMethod.GET, produces = AddressREST.APPLICATION_NDJSON_VALUE)
+	public void getCustomerStream(@RequestParam(value = "expand", required = false) String expand,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		final boolean withAddress = EXPAND_ADDRESS.equals(expand);
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(AddressREST.APPLICATION_NDJSON_VALUE);
+		new PagedJsonStream<Customer>(request.startAsync(), objectMapper.writerWithView(view(withAddress)),
+				streamPageSize, streamTimeout) {
+			@Override
+			protected List<Customer> readPage(Customer last, int pageSize) {
+				return customerService.readPage(last == null ? null : last.getCustomerId(), pageSize, withAddress);
+			}
+		}.start();
+	}
 
-		Collection<Customer> customers = customerService.readAll();
+    /**
+     * Read one page of customers with a GET, using keyset pagination.
+     * The customers are ordered by customerId. To read the next page, 
+     * pass the customerId of the last customer in the page as afterId.
+     * 
+	 * Example reading the first 2 customers and then the next 2:
+	 * shell> curl "localhost:8080/customer?limit=2"
+	 * shell> curl "localhost:8080/customer?afterId=2&limit=2&expand=address"
+     *
+     * @param afterId the customerId of the last customer of the previous page,
+     * 			not required for the first page
+     * @param limit the page size, at most customer.page.max-limit
+     * @param expand "address" to read the customers with their address
+     * @return a json array of at most limit customers and http status 200
+     * 			or http status 400 if the limit is not valid. 
+     * 			An empty array means there are no more customers.
+     */
+	@RequestMapping(value = "/customer", params = "limit", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<MappingJacksonValue> getCustomersPage(
+			@RequestParam(value = "afterId", required = false) Long afterId,
+			@RequestParam("limit") int limit,
+			@RequestParam(value = "expand", required = false) String expand) {
+		if (limit <= 0 || limit > maxPageLimit) {
+			return new ResponseEntity<MappingJacksonValue>(HttpStatus.BAD_REQUEST);
+		}
+		boolean withAddress = EXPAND_ADDRESS.equals(expand);
+		Collection<Customer> customers = customerService.readPage(afterId, limit, withAddress);
+		return new ResponseEntity<MappingJacksonValue>(withView(customers, withAddress), HttpStatus.OK);
+	}
 
-		logger.info("End getCustomers");
-		return new ResponseEntity<Collection<Customer>>(customers, HttpStatus.OK);
+    /**
+     * Read the customers of a list of ids with one GET, instead of one GET per customer.
+     * The customers in the cache are not read again, the others are read with 
+     * one query, see CustomerService.readByIds.
+     * 
+	 * Example:
+	 * shell> curl "localhost:8080/customer?ids=3,1,2"
+	 * shell> curl "localhost:8080/customer?ids=3,1,2&expand=address"
+     *
+     * @param ids the customerIds, at most ids.max-size of them
+     * @param expand "address" to write the customers with their address
+     * @return a json array of the customers, in the order of the ids, and http status 200.
+     * 			The ids which don't exist are left out.
+     * 			Http status 400 if there are no ids or too many.
+     */
+	@RequestMapping(value = "/customer", params = "ids", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<MappingJacksonValue> getCustomersByIds(@RequestParam("ids") List<Long> ids,
+			@RequestParam(value = "expand", required = false) String expand) {
+		if (ids.isEmpty() || ids.size() > maxIds || ids.contains(null)) {
+			return new ResponseEntity<MappingJacksonValue>(HttpStatus.BAD_REQUEST);
+		}
+		boolean withAddress = EXPAND_ADDRESS.equals(expand);
+		List<Customer> customers = customerService.readByIds(ids);
+		return new ResponseEntity<MappingJacksonValue>(withView(customers, withAddress), HttpStatus.OK);
 	}
 
     /**
      * Searches a customer having the customerId = id 
+     *
+     * The response has an ETag built from the customer version, see ETags.
+     * If the request has an If-None-Match header with this ETag, the response is 
+     * empty with HTTP status 304 and the customer is not serialized.
+     * 
+     * Without expand, the json bytes of the customer are cached in customerJson 
+     * (if customer.json-cache.enabled), so a customer read from the customers cache 
+     * is written to the response without being serialized again.
      *
 	 * Example searching for a customer with customerId = 1:
 	 * shell> curl localhost:8080/customer/1
+	 * shell> curl localhost:8080/customer/1?expand=address
+	 * shell> curl -H "If-None-Match: \"0\"" localhost:8080/customer/1
 	 * 
      * @param id for the address to GET
+     * @param expand "address" to write the customer with its address
+     * @param ifNoneMatch the ETags the client already has, if any
      * 
      * @return a json representation of the customer found and HTTP status 200
+     * 			or empty, if the customer has not changed, and HTTP status 304
      * 			or empty, if the customer is not found, and HTTP status 404
+     * @throws IOException if the customer can't be serialized
      */
 	@RequestMapping(value = "/customer/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Customer> getCustomer(@PathVariable("id") Long id) {
-		logger.info("Start getCustomer id:{}", id);
-
+	public ResponseEntity<byte[]> getCustomer(@PathVariable("id") Long id,
+			@RequestParam(value = "expand", required = false) String expand,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
 		Customer customer = customerService.read(id);
 		if (customer == null) {
-			return new ResponseEntity<Customer>(HttpStatus.NOT_FOUND);
+			return new ResponseEntity<byte[]>(HttpStatus.NOT_FOUND);
 		}
-
-		logger.info("End getCustomer id:{}", id);
-		return new ResponseEntity<Customer>(customer, HttpStatus.OK);
+		boolean withAddress = EXPAND_ADDRESS.equals(expand);
+		String eTag = ETags.of(customer, withAddress);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(eTag);
+		if (ETags.matches(ifNoneMatch, eTag)) {
+			return new ResponseEntity<byte[]>(headers, HttpStatus.NOT_MODIFIED);
+		}
+		SerializedJson json = withAddress 
+				? serialize(customer, true, eTag) 
+				: serializeCached(customer, eTag);
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		return new ResponseEntity<byte[]>(json.getBytes(), headers, HttpStatus.OK);
 	}
 
     /**
@@ -115,19 +333,119 @@ public class CustomerREST {
      */
 	@RequestMapping(value = "/customer", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<Customer> createCustomer(@RequestBody Customer customer) {
-		logger.info("Start createCustomer");
+		resolveAddress(customer);
+		Customer createdCustomer = customerService.create(customer);
+		return new ResponseEntity<Customer>(createdCustomer, HttpStatus.CREATED);
+	}
 
-		// we check and fetch the proper address data, by id
-		// client may've entered the right id but wrong data.
-		// if wrong id, address is set to null
+    /**
+     * Creates many Customers with one request
+     * 
+     * In order to invoke this service, POST a json array of customers
+     * at "<server>:<port>/customer/batch" 
+     * All the customers are created in one transaction, with the inserts sent to 
+     * the database in JDBC batches of customer.batch.size. 
+     * If one customer can't be created, none of them is created.
+     * The addresses are handled as for a single create: only the addressId is used.
+     * 
+	 * Example command and return values:
+	 * shell> curl -H "Content-Type: application/json" -X POST -d "[{ \"name\": \"teo\", \"telephoneNumber\" : \"123\", \"address\" : { \"addressId\": 2 }}, { \"name\": \"ana\" }]" http://localhost:8080/customer/batch
+     * shell> [5,6]
+     * 
+     * @param customers to be created, without customerId, 
+     * 			at most customer.batch.max-size customers
+     * @return a json array with the generated customerIds, in the same order 
+     * 			as the customers, and HTTP status 201
+     * 			or HTTP status 400 if there are too many customers
+     */
+	@RequestMapping(value = "/customer/batch", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<List<Long>> createCustomers(@RequestBody List<Customer> customers) {
+		if (customers.size() > maxBatchSize) {
+			return new ResponseEntity<List<Long>>(HttpStatus.BAD_REQUEST);
+		}
+		for (Customer customer : customers) {
+			resolveAddress(customer);
+		}
+		List<Long> customerIds = customerService.createAll(customers);
+		return new ResponseEntity<List<Long>>(customerIds, HttpStatus.CREATED);
+	}
+
+	/**
+	 * The json view used to write customers
+	 * 
+	 * @param withAddress true if the address of the customers is written
+	 * @return the WithAddress or the Summary view
+	 */
+	private static Class<?> view(boolean withAddress) {
+		return withAddress ? JsonViews.WithAddress.class : JsonViews.Summary.class;
+	}
+
+	/**
+	 * Wraps a response body, so it is written with the json view for withAddress
+	 * 
+	 * @param body a customer or a collection of customers
+	 * @param withAddress true if the address of the customers is written
+	 * @return the body with its json view
+	 */
+	private static MappingJacksonValue withView(Object body, boolean withAddress) {
+		MappingJacksonValue value = new MappingJacksonValue(body);
+		value.setSerializationView(view(withAddress));
+		return value;
+	}
+
+	/**
+	 * Serializes a customer with the json view for withAddress
+	 * 
+	 * @param customer to be serialized
+	 * @param withAddress true if the address of the customer is written
+	 * @param eTag the ETag of the customer
+	 * @return the json bytes of the customer
+	 * @throws IOException if the customer can't be serialized
+	 */
+	private SerializedJson serialize(Customer customer, boolean withAddress, String eTag) throws IOException {
+		return new SerializedJson(customer.getCustomerId(), objectMapper.writerWithView(view(withAddress)).writeValueAsBytes(customer),
+				eTag);
+	}
+
+	/**
+	 * Returns the cached json bytes of a customer, without address, or serializes 
+	 * and caches them. The cached bytes are used only if they were written from 
+	 * this customer, with the same id and ETag. 
+	 * The service evicts the bytes of a customer on update and delete. 
+	 * The bytes are cached with putIfAbsent, a fill which the other nodes are not told about.
+	 * 
+	 * @param customer read from the service
+	 * @param eTag the ETag of the customer
+	 * @return the json bytes of the customer
+	 * @throws IOException if the customer can't be serialized
+	 */
+	private SerializedJson serializeCached(Customer customer, String eTag) throws IOException {
+		if (!jsonCacheEnabled) {
+			return serialize(customer, false, eTag);
+		}
+		Cache cache = cacheManager.getCache(JSON_CACHE);
+		Cache.ValueWrapper cached = cache.get(customer.getCustomerId());
+		if (cached != null && ((SerializedJson) cached.get()).isWrittenFrom(customer.getCustomerId(), eTag)) {
+			return (SerializedJson) cached.get();
+		}
+		SerializedJson json = serialize(customer, false, eTag);
+		cache.putIfAbsent(customer.getCustomerId(), json);
+		return json;
+	}
+
+	/**
+	 * we check and fetch the proper address data, by id
+	 * client may've entered the right id but wrong data.
+	 * if wrong id, address is set to null
+	 * 
+	 * @param customer whose address is replaced by the address in the database
+	 */
+	private void resolveAddress(Customer customer) {
 		Address customerAddress = customer.getAddress();
 		if (customerAddress != null) {
 			customerAddress = addressService.read(customerAddress.getAddressId());
 			customer.setAddress(customerAddress);
 		}
-		Customer createdCustomer = customerService.create(customer);
-		logger.info("End createCustomer: {}", createdCustomer);
-		return new ResponseEntity<Customer>(createdCustomer, HttpStatus.CREATED);
 	}
 
     /**
@@ -141,20 +459,43 @@ public class CustomerREST {
      * Notes: - escapes may not be required on UNIX or is you use Postman or SoapUI.
      *        - this is similar with a create, however the http method is a PUT and the
      *        	input has a customerId value.
+     *        - with an If-Match header, the customer is updated only if its current 
+     *          version is the version of the ETag, otherwise the response is empty with 
+     *          HTTP status 412. The ETags are the ones of GET /customer/{id}. The version
+     *          of the ETag replaces the version of the json, and the versioned update
+     *          statement checks it, so a stale cache doesn't let a lost update through.
+     *          "*" updates the current version of an existing customer, whatever the
+     *          version of the json.
+     *        - if the customer has been updated since the version in the json was read,
+     *          the response is HTTP status 409.
+     *        - as for a create, only the addressId of the address is used.
      *        
      * @param customer to be updated
+     * @param ifMatch the ETags the client expects the customer to have, if any
      * @return the updated customer 
+     * 			or empty with HTTP status 412 if the customer has changed or doesn't exist
      */
 	@RequestMapping(value = "/customer", method = RequestMethod.PUT)
-	public ResponseEntity<Customer> updateCustomer(@RequestBody @Valid final Customer customer) {
-		logger.info("Start updateCustomer id:{}", customer.getCustomerId());
-
-		Customer updatedCustomer = customerService.update(customer);
+	public ResponseEntity<Customer> updateCustomer(@RequestBody @Valid final Customer customer,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (ifMatch != null) {
+			// null for "*": the update reads the current version
+			customer.setVersion(ETags.version(ifMatch));
+		}
+		resolveAddress(customer);
+		Customer updatedCustomer;
+		try {
+			updatedCustomer = customerService.update(customer);
+		} catch (OptimisticLockingFailureException | NoResultException e) {
+			if (ifMatch == null) {
+				throw e;
+			}
+			logger.debug("Precondition failed: {}", e.getMessage());
+			return new ResponseEntity<Customer>(HttpStatus.PRECONDITION_FAILED);
+		}
 		if (updatedCustomer == null) {
 			return new ResponseEntity<Customer>(HttpStatus.INTERNAL_SERVER_ERROR);
 		}
-
-		logger.info("End updateCustomer");
 		return new ResponseEntity<Customer>(updatedCustomer, HttpStatus.OK);
 	}
 
@@ -181,11 +522,9 @@ public class CustomerREST {
 	@RequestMapping(value = "/customer/{customerId}/address/{addressId}", method = RequestMethod.PUT)
 	public ResponseEntity<Customer> updateCustomerAddress(@PathVariable("customerId") Long customerId,
 			@PathVariable("addressId") Long addressId) {
-		logger.info("Start updateCustomer id:{} with address id: {}", customerId, addressId);
-
 		Customer customer = customerService.read(customerId);
 		if (customer == null) {
-			logger.info("No customer for id: " + customerId);
+			logger.debug("No customer for id: {}", customerId);
 			return new ResponseEntity<Customer>(HttpStatus.INTERNAL_SERVER_ERROR);
 		}
 
@@ -193,8 +532,6 @@ public class CustomerREST {
 		customer.setAddress(address);
 
 		Customer updatedCustomer = customerService.update(customer);
-
-		logger.info("End updateCustomerAddress");
 		return new ResponseEntity<Customer>(updatedCustomer, HttpStatus.OK);
 	}
 
@@ -220,11 +557,7 @@ public class CustomerREST {
 	 */
 	@RequestMapping(value = "/customer/{id}", method = RequestMethod.DELETE)
 	public ResponseEntity<Customer> deleteCustomer(@PathVariable("id") Long id) {
-		logger.info("Start deleteCustomer id:{}", id);
-
 		customerService.delete(id);
-
-		logger.info("End deleteCustomer id:{}", id);
 		return new ResponseEntity<Customer>(HttpStatus.NO_CONTENT);
 	}
 
@@ -240,4 +573,18 @@ public class CustomerREST {
 		return e.getMessage();
 	}
 
+	/**
+	 * An update of a customer which has been updated by another request
+	 * since the client read it. The client should read the customer again.
+	 * 
+	 * @param e the optimistic locking failure of the update
+	 * @return a String with the error message and HTTP status 409
+	 */
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public String handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+		logger.debug("Conflict: {}", e.getMessage());
+		return e.getMessage();
+	}
+
 }
@@ -0,0 +1,108 @@
+package com.teo.crud.controller.rest;
+
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Builds and compares the ETags of the customer and address resources.
+ *
+ * The ETags are strong and derived from the entity version, which is
+ * incremented by each update, so they are computed without serializing the entity:
+ * - an address or a customer without its address: "{version}"
+ * - a customer with its address: "{version}-{addressId}.{addressVersion}"
+ *   or "{version}-" if the customer has no address
+ *
+ * @author teodor cotruta
+ */
+final class ETags {
+
+	/**
+	 * The version of an If-Match header without matching ETag, which no row has:
+	 * the conditional update fails.
+	 */
+	static final Long NO_VERSION = Long.valueOf(-1);
+
+	private ETags() {
+	}
+
+	/**
+	 * @param address read from the service
+	 * @return the ETag of the address
+	 */
+	static String of(Address address) {
+		return "\"" + address.getVersion() + "\"";
+	}
+
+	/**
+	 * @param customer read from the service, with its address loaded if withAddress
+	 * @param withAddress true if the customer is written with its address
+	 * @return the ETag of the customer
+	 */
+	static String of(Customer customer, boolean withAddress) {
+		if (!withAddress) {
+			return "\"" + customer.getVersion() + "\"";
+		}
+		Address address = customer.getAddress();
+		return "\"" + customer.getVersion() + "-"
+				+ (address == null ? "" : address.getAddressId() + "." + address.getVersion()) + "\"";
+	}
+
+	/**
+	 * Compares the ETags of an If-None-Match header with the ETag of the resource.
+	 * The comparison is weak, as required for If-None-Match: a W/ prefix is ignored.
+	 *
+	 * @param ifNoneMatch the value of the If-None-Match header, can be null
+	 * @param eTag the current ETag of the resource
+	 * @return true if the header has the ETag or "*"
+	 */
+	static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The version the update of a resource is conditioned on by an If-Match header.
+	 * The version is the part of the ETag before the "-", so the ETag of both
+	 * representations of a customer can be used. The update statement takes one
+	 * version: with several ETags, the first strong one is used. Weak ETags never match.
+	 *
+	 * @param ifMatch the value of the If-Match header
+	 * @return the version of the first strong ETag, null if the header is "*", any version
+	 * 			of an existing resource, so the update reads the current version,
+	 * 			or NO_VERSION if no ETag of the header can match
+	 */
+	static Long version(String ifMatch) {
+		for (String tag : ifMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.equals("*")) {
+				return null;
+			}
+			if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+				continue;
+			}
+			String value = tag.substring(1, tag.length() - 1);
+			int dash = value.indexOf('-');
+			if (dash >= 0) {
+				value = value.substring(0, dash);
+			}
+			try {
+				return Long.valueOf(value);
+			} catch (NumberFormatException e) {
+				// not an ETag of this application
+			}
+		}
+		return NO_VERSION;
+	}
+
+}
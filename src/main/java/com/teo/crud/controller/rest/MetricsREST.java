@@ -0,0 +1,65 @@
+package com.teo.crud.controller.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.teo.crud.async.BoundedExecutor;
+import com.teo.crud.metrics.DataSourceMetrics;
+import com.teo.crud.metrics.MetricsRegistry;
+import com.teo.crud.metrics.PrometheusWriter;
+
+/**
+ * This class provides a rest controller for the metrics of the application,
+ * in the Prometheus text format, to be scraped by a Prometheus server.
+ * The main paths are:
+ *
+ * "/metrics" to read the latency and error metrics of the REST handlers and 
+ * of the repository queries, the cache statistics, the connection pool
+ * metrics and the async executor metrics, using a GET
+ *
+ * @author teodor cotruta
+ */
+@RestController
+public class MetricsREST {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private DataSourceMetrics dataSourceMetrics;
+
+    @Autowired
+    private BoundedExecutor executor;
+
+    /**
+     * Read the metrics with a GET
+     *
+	 * Example:
+	 * shell> curl localhost:8080/metrics
+	 * # HELP http_server_requests_seconds Duration of the calls of each REST handler
+	 * # TYPE http_server_requests_seconds summary
+	 * http_server_requests_seconds{handler="CustomerREST.getCustomer",quantile="0.5"} 0.001207
+	 * ...
+	 * http_server_requests_seconds_count{handler="CustomerREST.getCustomer"} 12
+	 * http_server_requests_seconds_sum{handler="CustomerREST.getCustomer"} 0.031
+	 * ...
+	 * cache_requests_total{cache="customers",result="hit"} 9
+     *
+     * @return the metrics, as text, and HTTP status 200
+     */
+    @RequestMapping(
+    		value = "/metrics",
+    		method = RequestMethod.GET,
+    		produces = PrometheusWriter.CONTENT_TYPE)
+    public ResponseEntity<String> getMetrics() {
+        return new ResponseEntity<String>(PrometheusWriter.write(metricsRegistry, cacheManager, dataSourceMetrics, executor), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,159 @@
+package com.teo.crud.controller.rest;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Streams records, read from the database one page at a time, as newline
+ * delimited json, with the non-blocking output of the servlet container.
+ *
+ * The records are written only while the client can take them
+ * (ServletOutputStream.isReady), and the next page is read only once the previous
+ * one has been written. When the client is slow, the container calls onWritePossible
+ * again when it has taken the pending bytes. So, whatever the number of records:
+ * - a stream holds at most one page of records in memory
+ * - no thread waits for a slow client
+ * - no database connection is held between two pages, each page is read
+ *   in its own transaction
+ *
+ * The stream ends after a page smaller than the page size. It is stopped if the
+ * client goes away, or after timeout milliseconds.
+ *
+ * @author teodor cotruta
+ *
+ * @param <T> the type of the records
+ */
+abstract class PagedJsonStream<T> implements WriteListener, AsyncListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(PagedJsonStream.class);
+
+	private final AsyncContext asyncContext;
+
+	private final ServletOutputStream out;
+
+	private final ObjectWriter writer;
+
+	private final int pageSize;
+
+	private List<T> page = Collections.emptyList();
+
+	private int next;
+
+	private T last;
+
+	private boolean lastPage;
+
+	/**
+	 * Set by the thread which completes the stream, the callbacks of the timeout and
+	 * of the errors may run on another thread than the writes.
+	 */
+	private final AtomicBoolean completed = new AtomicBoolean();
+
+	/**
+	 * @param asyncContext of the request, started by the controller
+	 * @param writer the json writer of the records, with the view of the request
+	 * @param pageSize the number of records read from the database at a time
+	 * @param timeout the milliseconds before the stream is stopped, 0 for no timeout
+	 * @throws IOException if the output stream of the response can't be opened
+	 */
+	PagedJsonStream(AsyncContext asyncContext, ObjectWriter writer, int pageSize, long timeout) throws IOException {
+		this.asyncContext = asyncContext;
+		this.out = asyncContext.getResponse().getOutputStream();
+		this.writer = writer;
+		this.pageSize = pageSize;
+		asyncContext.setTimeout(timeout);
+		asyncContext.addListener(this);
+	}
+
+	/**
+	 * Reads the page of records after the last record written.
+	 *
+	 * @param last the last record written, null for the first page
+	 * @param pageSize the maximum number of records of the page
+	 * @return the next records, empty if there are no more records
+	 */
+	protected abstract List<T> readPage(T last, int pageSize);
+
+	/**
+	 * Starts the stream. The records are written from the callbacks of the container,
+	 * the caller returns at once.
+	 */
+	void start() {
+		out.setWriteListener(this);
+	}
+
+	@Override
+	public void onWritePossible() throws IOException {
+		while (out.isReady()) {
+			if (next == page.size()) {
+				if (lastPage) {
+					complete();
+					return;
+				}
+				page = readPage(last, pageSize);
+				next = 0;
+				lastPage = page.size() < pageSize;
+				continue;
+			}
+			last = page.get(next++);
+			out.write(writer.writeValueAsBytes(last));
+			out.write('\n');
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		if (t instanceof IOException) {
+			logger.debug("The client went away before the end of the stream: {}", t.toString());
+		} else {
+			logger.error("The stream failed", t);
+		}
+		complete();
+	}
+
+	@Override
+	public void onComplete(AsyncEvent event) {
+		completed.set(true);
+		page = Collections.emptyList();
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) {
+		logger.debug("The stream timed out after {}", last);
+		complete();
+	}
+
+	@Override
+	public void onError(AsyncEvent event) {
+		onError(event.getThrowable());
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+
+	/**
+	 * Completes the async request, once: the container reports an error
+	 * to both the WriteListener and the AsyncListener, and a timeout may race
+	 * with the end of the stream.
+	 */
+	private void complete() {
+		if (completed.compareAndSet(false, true)) {
+			asyncContext.complete();
+		}
+	}
+
+}
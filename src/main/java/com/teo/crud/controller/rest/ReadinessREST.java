@@ -0,0 +1,53 @@
+package com.teo.crud.controller.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This class provides a rest controller for the readiness of the application,
+ * for the load balancer. The main paths are:
+ *
+ * "/ready" to read the readiness of the application using a GET
+ *
+ * @author teodor cotruta
+ */
+@RestController
+public class ReadinessREST {
+
+    /**
+     * The readiness state, published by Spring Boot once the application
+     * has started, after the cache warm-up.
+     */
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    /**
+     * Read the readiness of the application with a GET
+     * The application is not ready while it starts, and while the caches are warmed up,
+     * see CacheWarmUp.
+     *
+	 * Example:
+	 * shell> curl localhost:8080/ready
+	 * ACCEPTING_TRAFFIC
+     *
+     * @return the readiness state, ACCEPTING_TRAFFIC with HTTP status 200,
+     * 			or REFUSING_TRAFFIC with HTTP status 503
+     */
+    @RequestMapping(
+    		value = "/ready",
+    		method = RequestMethod.GET,
+    		produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getReadiness() {
+
+        ReadinessState state = applicationAvailability.getReadinessState();
+        HttpStatus status = state == ReadinessState.ACCEPTING_TRAFFIC ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return new ResponseEntity<String>(state.name(), status);
+    }
+}
@@ -0,0 +1,53 @@
+package com.teo.crud.controller.rest;
+
+/**
+ * The UTF-8 json bytes of an entity, with their ETag, as written to a response.
+ *
+ * The id of the entity the bytes were written from is kept with the ETag, so a
+ * cached SerializedJson can be checked against the entity currently read from the
+ * service: the ETag changes with the versions of the entity, so the bytes of the
+ * same id and ETag are the json of the same state. The entity instance is not
+ * compared, the caches which keep their values encoded return a new instance
+ * on each read.
+ *
+ * @author teodor cotruta
+ */
+final class SerializedJson {
+
+	private final Object id;
+
+	private final byte[] bytes;
+
+	private final String eTag;
+
+	SerializedJson(Object id, byte[] bytes, String eTag) {
+		this.id = id;
+		this.bytes = bytes;
+		this.eTag = eTag;
+	}
+
+	/**
+	 * @param currentId the id of the entity currently read from the service
+	 * @param currentETag the ETag of the entity now
+	 * @return true if the bytes were written from the entity of this id,
+	 * 			with the same ETag
+	 */
+	boolean isWrittenFrom(Object currentId, String currentETag) {
+		return id.equals(currentId) && eTag.equals(currentETag);
+	}
+
+	/**
+	 * @return the json bytes, they must not be modified
+	 */
+	byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the ETag of the entity, see ETags
+	 */
+	String getETag() {
+		return eTag;
+	}
+
+}
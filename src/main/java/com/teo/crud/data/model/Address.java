@@ -2,8 +2,14 @@ package com.teo.crud.data.model;
 
 import java.io.Serializable;
 
-import javax.persistence.*;
+import jakarta.persistence.*;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonView;
 
 /**
  * The persistent class for the address database table.
@@ -11,6 +17,17 @@ import javax.persistence.*;
  * addressId instead of an 'id' field This is useful when we 
  * do sql queries to easier distinguish between column names in the results.
  * 
+ * An address referenced by a customer can be a lazy loading hibernate proxy.
+ * The proxy properties are ignored when the address is written as json.
+ * All the properties belong to the Summary json view, so the address is
+ * written in full when a customer is written WithAddress.
+ * 
+ * The addressId is generated from the ADDRESS_SEQ sequence, 
+ * in blocks of ids as described in IdAllocation.
+ * 
+ * The version is incremented by each update. It is used for optimistic locking
+ * and by the REST services to build the ETag of the address.
+ * 
  * There is no requirement to add the Address entity to a persistence file
  * The framework scans all the directories and finds the @Entity annotations
  * 
@@ -18,29 +35,47 @@ import javax.persistence.*;
  */
 @Entity
 @NamedQuery(name="Address.findAll", query="SELECT a FROM Address a")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Address implements Serializable {
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@GeneratedValue 
+	@GeneratedValue(generator = "addressIdGenerator")
+	@GenericGenerator(name = "addressIdGenerator",
+		type = SequenceStyleGenerator.class,
+		parameters = {
+			@Parameter(name = "sequence_name", value = "ADDRESS_SEQ"),
+			@Parameter(name = "increment_size", value = IdAllocation.ALLOCATION_SIZE),
+			@Parameter(name = "optimizer", value = IdAllocation.OPTIMIZER) })
 	@Column(name="ADDRESS_ID")
+	@JsonView(JsonViews.Summary.class)
 	private Long addressId;
 
+	@JsonView(JsonViews.Summary.class)
 	private String city;
 
+	@JsonView(JsonViews.Summary.class)
 	private String country;
 
 	@Column(name="STREET_NAME")
+	@JsonView(JsonViews.Summary.class)
 	private String streetName;
 
 	@Column(name="STREET_NUMBER")
+	@JsonView(JsonViews.Summary.class)
 	private String streetNumber;
 
 	@Column(name="STREET_TYPE")
+	@JsonView(JsonViews.Summary.class)
 	private String streetType;
 
+	@JsonView(JsonViews.Summary.class)
 	private String suburb;
 
+	@Version
+	@JsonView(JsonViews.Summary.class)
+	private Long version;
+
 	public Address() {
 	}
 
@@ -100,4 +135,12 @@ public class Address implements Serializable {
 		this.suburb = suburb;
 	}
 
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 }
\ No newline at end of file
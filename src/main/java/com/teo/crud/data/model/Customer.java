@@ -1,7 +1,13 @@
 package com.teo.crud.data.model;
 
 import java.io.Serializable;
-import javax.persistence.*;
+import jakarta.persistence.*;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import com.fasterxml.jackson.annotation.JsonView;
 
 /**
  * The persistent class for the customer database table.
@@ -17,6 +23,18 @@ import javax.persistence.*;
  * have to be created before a customer address is created. 
  * If there are no addresses in the database, all the customers will have a null address.
  * 
+ * The address is loaded lazily. The queries which need the address, like the reads 
+ * of the CustomerRepository used by the REST services, fetch it with a join in the 
+ * same select, so reading a list of customers is one sql statement 
+ * and not one statement per address.
+ * The json views in JsonViews let the clients choose if the address is written.
+ * 
+ * The customerId is generated from the CUSTOMER_SEQ sequence, 
+ * in blocks of ids as described in IdAllocation.
+ * 
+ * The version is incremented by each update. It is used for optimistic locking
+ * and by the REST services to build the ETag of the customer.
+ * 
  * The point to note is that I use
  * customerId instead of an 'id' field This is useful when we 
  * do sql queries to easier distinguish between column names in the results.
@@ -32,19 +50,33 @@ public class Customer implements Serializable {
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@GeneratedValue //(strategy=GenerationType.TABLE)
+	@GeneratedValue(generator = "customerIdGenerator")
+	@GenericGenerator(name = "customerIdGenerator",
+		type = SequenceStyleGenerator.class,
+		parameters = {
+			@Parameter(name = "sequence_name", value = "CUSTOMER_SEQ"),
+			@Parameter(name = "increment_size", value = IdAllocation.ALLOCATION_SIZE),
+			@Parameter(name = "optimizer", value = IdAllocation.OPTIMIZER) })
 	@Column(name="CUSTOMER_ID")
+	@JsonView(JsonViews.Summary.class)
 	private Long customerId;
 
+	@JsonView(JsonViews.Summary.class)
 	private String name;
 
 	@Column(name="TELEPHONE_NUMBER")
+	@JsonView(JsonViews.Summary.class)
 	private String telephoneNumber;
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="ADDRESS_ID")
+	@JsonView(JsonViews.WithAddress.class)
 	private Address address;
 
+	@Version
+	@JsonView(JsonViews.Summary.class)
+	private Long version;
+
 	public Customer() {
 	}
 
@@ -80,4 +112,12 @@ public class Customer implements Serializable {
 		this.address = address;
 	}
 
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 }
\ No newline at end of file
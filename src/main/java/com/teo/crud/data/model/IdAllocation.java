@@ -0,0 +1,36 @@
+package com.teo.crud.data.model;
+
+/**
+ * Settings of the id generators of the entities.
+ * 
+ * The ids of Address and Customer are generated from database sequences with 
+ * the hibernate SequenceStyleGenerator and its pooled-lo optimizer. One call to the sequence reserves a block 
+ * of ALLOCATION_SIZE ids and the ids of the block are then assigned in memory,
+ * without going to the database. Hibernate knows the id before the insert, 
+ * so the insert can be delayed until flush and sent in a JDBC batch.
+ * 
+ * The allocation size is set here for all the entities. If it is changed, 
+ * the INCREMENT BY of the sequences in create-addresses-customers.sql 
+ * has to be changed to the same value.
+ * A larger block means fewer calls to the sequence, at the cost of bigger gaps
+ * in the ids when the application is restarted.
+ * 
+ * @author teodor cotruta
+ *
+ */
+public final class IdAllocation {
+
+	/**
+	 * The hibernate optimizer: the value read from the sequence is the first id of the block
+	 */
+	public static final String OPTIMIZER = "pooled-lo";
+
+	/**
+	 * The number of ids reserved with one call to a sequence
+	 */
+	public static final String ALLOCATION_SIZE = "50";
+
+	private IdAllocation() {
+	}
+
+}
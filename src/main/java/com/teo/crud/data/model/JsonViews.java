@@ -0,0 +1,31 @@
+package com.teo.crud.data.model;
+
+/**
+ * Jackson views used by the REST services to choose which properties 
+ * of the entities are written in the json responses.
+ * 
+ * A customer is written either as a Summary, without its address, 
+ * or WithAddress. The clients choose with the expand=address request parameter.
+ * When no view is used, all the properties are written.
+ * 
+ * @author teodor cotruta
+ *
+ */
+public final class JsonViews {
+
+	/**
+	 * The properties of the entity itself, without the referenced entities
+	 */
+	public interface Summary {
+	}
+
+	/**
+	 * The Summary properties and the address of a customer
+	 */
+	public interface WithAddress extends Summary {
+	}
+
+	private JsonViews() {
+	}
+
+}
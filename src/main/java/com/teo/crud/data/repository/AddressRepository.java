@@ -1,6 +1,13 @@
 package com.teo.crud.data.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.teo.crud.data.model.Address;
 
 /**
@@ -20,4 +27,48 @@ import com.teo.crud.data.model.Address;
  *
  */
 public interface AddressRepository extends JpaRepository<Address, Long>{
+
+	/**
+	 * Reads the version of an address, without reading the address.
+	 * 
+	 * @param addressId of the address
+	 * @return the current version or null if there is no address with this id
+	 */
+	@Query("SELECT a.version FROM Address a WHERE a.addressId = :addressId")
+	Long findVersion(@Param("addressId") Long addressId);
+
+	/**
+	 * Keyset pagination over the address table, as CustomerRepository.findPageAfter.
+	 * 
+	 * @param afterId the last addressId of the previous page, 0 for the first page
+	 * @param pageable the page size, as in PageRequest.of(0, limit)
+	 * @return the next page of addresses, empty when there are no more addresses
+	 */
+	@Query("SELECT a FROM Address a WHERE a.addressId > :afterId ORDER BY a.addressId")
+	List<Address> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+	/**
+	 * Reads the addresses of a list of ids with one select.
+	 * 
+	 * @param addressIds of the addresses to be found
+	 * @return the addresses found, in no particular order
+	 */
+	@Query("SELECT a FROM Address a WHERE a.addressId IN :addressIds")
+	List<Address> findAllByIds(@Param("addressIds") Collection<Long> addressIds);
+
+	/**
+	 * Updates an address with one statement, only if its version is still the given version,
+	 * and increments the version. See CustomerRepository.updateIfVersion.
+	 * 
+	 * @param address with the new values and the version it was read with
+	 * @return the number of updated rows: 1 if updated, 0 if the address doesn't exist 
+	 * 			or has another version
+	 */
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Address a SET a.city = :#{#address.city}, a.country = :#{#address.country}, "
+			+ "a.streetName = :#{#address.streetName}, a.streetNumber = :#{#address.streetNumber}, "
+			+ "a.streetType = :#{#address.streetType}, a.suburb = :#{#address.suburb}, "
+			+ "a.version = a.version + 1 "
+			+ "WHERE a.addressId = :#{#address.addressId} AND a.version = :#{#address.version}")
+	int updateIfVersion(@Param("address") Address address);
 }
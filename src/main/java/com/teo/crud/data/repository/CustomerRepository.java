@@ -1,7 +1,14 @@
 
 package com.teo.crud.data.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.teo.crud.data.model.Customer;
 
 /**
@@ -21,4 +28,93 @@ import com.teo.crud.data.model.Customer;
  *
  */
 public interface CustomerRepository extends JpaRepository<Customer, Long>{
+
+	/**
+	 * Keyset (seek) pagination over the customer table.
+	 * Reads the customers with a customerId greater than afterId, ordered by customerId.
+	 * Only the page size of the pageable is used; the page number should always be 0,
+	 * because the position in the table is given by afterId and not by an offset.
+	 * This way the database uses the primary key index to find the start of the page
+	 * and the cost of a page does not grow with the position in the table.
+	 * 
+	 * @param afterId the last customerId of the previous page, 0 for the first page
+	 * @param pageable the page size, as in PageRequest.of(0, limit)
+	 * @return the next page of customers, empty when there are no more customers
+	 */
+	@Query("SELECT c FROM Customer c WHERE c.customerId > :afterId ORDER BY c.customerId")
+	List<Customer> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+	/**
+	 * Same as findPageAfter, but the address of each customer is fetched 
+	 * with a join in the same select.
+	 * 
+	 * @param afterId the last customerId of the previous page, 0 for the first page
+	 * @param pageable the page size, as in PageRequest.of(0, limit)
+	 * @return the next page of customers with their addresses
+	 */
+	@Query("SELECT c FROM Customer c LEFT JOIN FETCH c.address WHERE c.customerId > :afterId ORDER BY c.customerId")
+	List<Customer> findPageAfterWithAddress(@Param("afterId") Long afterId, Pageable pageable);
+
+	/**
+	 * Reads all the customers and their addresses with one select.
+	 * findAll would issue one more select for each address, when the addresses are used.
+	 * 
+	 * @return all the customers, with their addresses, ordered by customerId
+	 */
+	@Query("SELECT c FROM Customer c LEFT JOIN FETCH c.address ORDER BY c.customerId")
+	List<Customer> findAllWithAddress();
+
+	/**
+	 * Reads one customer and its address with one select.
+	 * 
+	 * @param customerId of the customer to be found
+	 * @return the customer with its address or null if there is no customer with this id
+	 */
+	@Query("SELECT c FROM Customer c LEFT JOIN FETCH c.address WHERE c.customerId = :customerId")
+	Customer findOneWithAddress(@Param("customerId") Long customerId);
+
+	/**
+	 * Reads the customers of a list of ids and their addresses with one select.
+	 * 
+	 * @param customerIds of the customers to be found
+	 * @return the customers found with their addresses, in no particular order
+	 */
+	@Query("SELECT c FROM Customer c LEFT JOIN FETCH c.address WHERE c.customerId IN :customerIds")
+	List<Customer> findAllWithAddressByIds(@Param("customerIds") Collection<Long> customerIds);
+
+	/**
+	 * Reads the ids of the customers of an address, without reading the customers.
+	 * 
+	 * @param addressId of the address
+	 * @return the customerIds of the customers which reference the address
+	 */
+	@Query("SELECT c.customerId FROM Customer c WHERE c.address.addressId = :addressId")
+	List<Long> findIdsByAddressId(@Param("addressId") Long addressId);
+
+	/**
+	 * Reads the version of a customer, without reading the customer.
+	 * 
+	 * @param customerId of the customer
+	 * @return the current version or null if there is no customer with this id
+	 */
+	@Query("SELECT c.version FROM Customer c WHERE c.customerId = :customerId")
+	Long findVersion(@Param("customerId") Long customerId);
+
+	/**
+	 * Updates a customer with one statement, only if its version is still the given version,
+	 * and increments the version. This is optimistic locking without reading the customer first:
+	 * when two updates start from the same version, only the first one updates the row.
+	 * 
+	 * The persistence context is cleared after the update, because the statement 
+	 * does not update the customers it manages.
+	 * 
+	 * @param customer with the new values and the version it was read with
+	 * @return the number of updated rows: 1 if updated, 0 if the customer doesn't exist 
+	 * 			or has another version
+	 */
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Customer c SET c.name = :#{#customer.name}, c.telephoneNumber = :#{#customer.telephoneNumber}, "
+			+ "c.address = :#{#customer.address}, c.version = c.version + 1 "
+			+ "WHERE c.customerId = :#{#customer.customerId} AND c.version = :#{#customer.version}")
+	int updateIfVersion(@Param("customer") Customer customer);
 }
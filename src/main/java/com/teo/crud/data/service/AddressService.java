@@ -1,6 +1,8 @@
 package com.teo.crud.data.service;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 import com.teo.crud.data.model.Address;
 
@@ -65,6 +67,40 @@ public interface AddressService {
 	 * @return all addresses in a Collection<Address> 
 	 */
 	Collection<Address> readAll();
+
+	/**
+	 * readPage reads the addresses with an addressId greater than afterId, 
+	 * ordered by addressId, at most limit of them.
+	 * 
+	 * @param afterId the addressId of the last address of the previous page, 
+	 * 			null for the first page
+	 * @param limit the maximum number of addresses of the page, greater than 0
+	 * @return the page of addresses, empty when there are no more addresses
+	 */
+	List<Address> readPage(Long afterId, int limit);
+
+	/**
+	 * Reads the addresses of a list of ids.
+	 * The addresses in the cache are not read again, the others are read 
+	 * with one query, whatever their number, and cached.
+	 * 
+	 * @param ids the addressIds of the addresses to be read
+	 * @return the addresses, in the order of the ids. There is no address 
+	 * 			for an id that doesn't exist.
+	 */
+	List<Address> readByIds(List<Long> ids);
+
+	/**
+	 * exportAll reads all the address records in the database, ordered by addressId,
+	 * and passes them one at a time to the callback.
+	 * Unlike readAll, the addresses are not collected in memory, so the memory used
+	 * does not depend on the number of addresses in the database.
+	 * 
+	 * @param callback which processes each address
+	 * @return the number of addresses exported
+	 * @throws IOException if the callback fails to process an address
+	 */
+	long exportAll(EntityCallback<Address> callback) throws IOException;
 	
 	/**
 	 * If the cache is enabled, each method call in this class 
@@ -1,17 +1,37 @@
 package com.teo.crud.data.service;
 
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.teo.crud.data.model.Address;
 import com.teo.crud.data.repository.AddressRepository;
-import javax.persistence.EntityExistsException;
-import javax.persistence.NoResultException;
+import com.teo.crud.data.repository.CustomerRepository;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.PersistenceContext;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,44 +53,163 @@ public class AddressServiceImpl implements AddressService {
 	@Autowired
 	private AddressRepository addressRepository;
 
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The number of rows the JDBC driver fetches at a time during exportAll.
+	 */
+	@Value("${address.export.fetch-size:500}")
+	private int exportFetchSize;
+
 	/**
 	 * readAll finds all the address records in the database and returns a collection
 	 * of entity records.
+	 * The list is cached in addressLists until the next create, update or delete.
+	 * The concurrent misses read the list once (sync).
 	 * 
-	 * @return all addresses in a Collection<Address> 
+	 * @return all addresses in an unmodifiable Collection<Address> 
 	 */
 	@Override
+	@Cacheable(value = "addressLists", key = "'all'", sync = true)
 	@Transactional(readOnly = true)
 	public Collection<Address> readAll() {
-		logger.info("Start readAll");
+		Collection<Address> addresses = Collections.unmodifiableList(addressRepository.findAll());
+		return addresses;
+	}
 
-		Collection<Address> addresses = addressRepository.findAll();
+	/**
+	 * Reads one page of addresses using keyset pagination, in its own read only 
+	 * transaction. The pages are not cached: they are read by the streams of 
+	 * all the addresses, which would evict the single reads from the caches.
+	 * The addresses of the page are detached once read, so the persistence context
+	 * of an open-in-view request doesn't keep the addresses of the previous pages.
+	 * 
+	 * @param afterId the addressId of the last address of the previous page
+	 * 			or null to read the first page
+	 * @param limit the maximum number of addresses in the page, greater than 0
+	 * @return an unmodifiable page of at most limit addresses, ordered by addressId
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Address> readPage(Long afterId, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("The page limit must be greater than 0.");
+		}
+		Long startAfter = afterId == null ? Long.valueOf(0) : afterId;
+		List<Address> addresses = addressRepository.findPageAfter(startAfter, PageRequest.of(0, limit));
+		for (Address address : addresses) {
+			entityManager.detach(address);
+		}
+		return Collections.unmodifiableList(addresses);
+	}
 
-		logger.info("End readAll");
-		return addresses;
+	/**
+	 * exportAll reads all the address records in the database with a forward only
+	 * cursor and passes them one at a time to the callback.
+	 * Each address is evicted from the persistence context once processed, and the
+	 * second level cache is bypassed, so the memory used is constant.
+	 * 
+	 * @param callback which processes each address
+	 * @return the number of addresses exported
+	 * @throws IOException if the callback fails to process an address
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long exportAll(EntityCallback<Address> callback) throws IOException {
+		Session session = entityManager.unwrap(Session.class);
+		ScrollableResults<Address> results = session
+				.createQuery("SELECT a FROM Address a ORDER BY a.addressId", Address.class)
+				.setReadOnly(true)
+				.setFetchSize(exportFetchSize)
+				.setCacheMode(CacheMode.IGNORE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long count = 0;
+		try {
+			while (results.next()) {
+				Address address = results.get();
+				callback.process(address);
+				session.evict(address);
+				count++;
+			}
+		} finally {
+			results.close();
+		}
+		return count;
 	}
 
 	/**
 	 * Reads or finds a address from/in the database
 	 * 
+	 * The concurrent misses of the same address are loaded once (sync), 
+	 * see CustomerServiceImpl.read. An id without address is cached in the
+	 * missingAddresses cache.
+	 * 
 	 * @param id, which is a address id to be found
 	 * @return The address entity record with the addressId = id 
 	 * 			if there is no such address, the method returns null
 	 */
 	@Override
-	@Cacheable(value = "addresses", key = "#addressId")
+	@Cacheable(value = "addresses", key = "#addressId", sync = true)
 	@Transactional(readOnly = true)
 	public Address read(Long addressId) {
-		logger.info("Start read addressId:{}", addressId);
-
-		Address address = addressRepository.findOne(addressId);
-
-		logger.info("End read id:{}", addressId);
+		Address address = addressRepository.findById(addressId).orElse(null);
 		return address;
 	}
 
+	/**
+	 * Reads the addresses of a list of ids, as CustomerServiceImpl.readByIds: 
+	 * the hits of the addresses cache first, then the misses with one IN query, 
+	 * which are put in the cache if absent, and the ids without address are cached as missing.
+	 * 
+	 * @param ids the addressIds of the addresses to be read
+	 * @return an unmodifiable list of the addresses, in the order of the ids. 
+	 * 			There is no address for an id that doesn't exist.
+	 */
+	@Override
+	public List<Address> readByIds(List<Long> ids) {
+		Cache cache = cacheManager.getCache("addresses");
+		Map<Long, Address> found = new HashMap<Long, Address>();
+		List<Long> misses = new ArrayList<Long>();
+		for (Long id : ids) {
+			ValueWrapper cached = cache.get(id);
+			if (cached != null) {
+				found.put(id, (Address) cached.get());
+			} else if (!misses.contains(id)) {
+				misses.add(id);
+			}
+		}
+		if (!misses.isEmpty()) {
+			for (Address address : addressRepository.findAllByIds(misses)) {
+				cache.putIfAbsent(address.getAddressId(), address);
+				found.put(address.getAddressId(), address);
+			}
+			for (Long id : misses) {
+				if (!found.containsKey(id)) {
+					cache.putIfAbsent(id, null);
+				}
+			}
+		}
+		List<Address> addresses = new ArrayList<Address>(ids.size());
+		for (Long id : ids) {
+			Address address = found.get(id);
+			if (address != null) {
+				addresses.add(address);
+			}
+		}
+		return Collections.unmodifiableList(addresses);
+	}
+
 	/**
 	 * Create a address in the database
+	 * The cached list of addresses is evicted. The created address is put in the
+	 * cache, which removes its id from the missing addresses.
 	 * 
 	 * @param address to be created
 	 * @return The address which has been created
@@ -78,10 +217,10 @@ public class AddressServiceImpl implements AddressService {
 	 */
 	@Override
 	@Transactional(readOnly = false)
-	@CachePut(value = "addresses", key = "#result.addressId")
+	@Caching(
+			put = @CachePut(value = "addresses", key = "#result.addressId"),
+			evict = @CacheEvict(value = "addressLists", allEntries = true))
 	public Address create(Address address) {
-		logger.info("Start create");
-
 		// Ensure the entity object to be created does NOT exist in the
 		// repository. Prevent the default behavior of save() which will update
 		// an existing entity if the entity matching the supplied id exists.
@@ -92,71 +231,93 @@ public class AddressServiceImpl implements AddressService {
 		}
 
 		Address savedAddress = addressRepository.save(address);
-
-		logger.info("End create");
 		return savedAddress;
 	}
 
 
 	/**
 	 * Update a address record in the database.
-	 * The default implementation in the repository is an upsert:
-	 * this means that the record is created if it doesn't exists.
-	 * What we want to do is avoid creating records and only update
-	 * them when the records exist. Therefore we check if the record exists 
-	 * and only then update the record. If the record doens't exist
-	 * we throw a runtime exception
+	 * The address is updated with one conditional statement, only if the version
+	 * of the row is still the version of the address (optimistic locking), 
+	 * as in CustomerServiceImpl.update. An address that doesn't exist is not created.
+	 * An address without version is updated with the version currently in the database.
+	 * An address managed by the current transaction is flushed instead.
+	 * The cached lists of addresses and customers, which list the addresses, are evicted,
+	 * and so are the cached customers of the address and their json, which embed it.
+	 * The other cached customers are kept.
 	 * 
-	 * @param id, which is a address id to be found
-	 * @return The address entity record with the addressId = id 
-	 * 			if there is no such address, the method returns null
+	 * @param address to be updated, with the version it was read with
+	 * @return The updated address, with the incremented version
 	 * 
-	 * @Exception address not found
+	 * @throws NoResultException if there is no address with this addressId
+	 * @throws ObjectOptimisticLockingFailureException if the address has been updated 
+	 * 			since it was read with this version. The address is evicted from the cache.
 	 */
     @Override
     @Transactional(readOnly = false)
-    @CachePut(value = "addresses", key = "#address.addressId")
+    @Caching(
+            put = @CachePut(value = "addresses", key = "#address.addressId"),
+            evict = @CacheEvict(value = { "addressLists", "customerLists" }, allEntries = true))
     public Address update(Address address) {
-        logger.info("Start update id:{}", address.getAddressId());
-
-        // Ensure the entity object to be updated exists in the repository to
-        // prevent the default behavior of save() which will persist a new
-        // entity if the entity matching the id does not exist
-        Address addressToUpdate = read(address.getAddressId());
-        if (addressToUpdate == null) {
-            // Cannot update Address that hasn't been persisted
-            logger.error(
-                    "Attempted to update an Address, but the entity does not exist.");
-            throw new NoResultException("Requested entity not found.");
+        Long addressId = address.getAddressId();
+        if (entityManager.contains(address)) {
+            entityManager.flush();
+            evictCustomers(addressId);
+            return address;
         }
-
-        Address updatedAddress = addressRepository.save(address);
-
-        logger.info("End update id:{}", address.getAddressId());
-        return updatedAddress;
+        if (address.getVersion() == null) {
+            address.setVersion(addressRepository.findVersion(addressId));
+        }
+        int updated = address.getVersion() == null ? 0 : addressRepository.updateIfVersion(address);
+        if (updated == 0) {
+            if (address.getVersion() == null || !addressRepository.existsById(addressId)) {
+                // Cannot update Address that hasn't been persisted
+                logger.error(
+                        "Attempted to update an Address, but the entity does not exist.");
+                throw new NoResultException("Requested entity not found.");
+            }
+            logger.debug("Address {} has been updated since version {}", addressId, address.getVersion());
+            cacheManager.getCache("addresses").evict(addressId);
+            throw new ObjectOptimisticLockingFailureException(Address.class, addressId);
+        }
+        address.setVersion(address.getVersion() + 1);
+        evictCustomers(addressId);
+        return address;
     }
 
 	/**
 	 * deletes a record if it exists
+	 * The cached lists of addresses and customers are evicted, and so are the cached 
+	 * customers of the address and their json, which embed it.
 	 * 
 	 * @param id is the addressId of the record to be deleted.
 	 */
     @Override
     @Transactional(readOnly = false)
-    @CacheEvict(value = "addresses", key = "#addressId")
+    @Caching(evict = {
+            @CacheEvict(value = "addresses", key = "#addressId"),
+            @CacheEvict(value = { "addressLists", "customerLists" }, allEntries = true) })
     public void delete(Long addressId) {
-        logger.info("Start delete id:{}", addressId);
-
-        addressRepository.delete(addressId);
+        evictCustomers(addressId);
+        addressRepository.deleteById(addressId);
+    }
 
-        logger.info("End delete id:{}", addressId);
+    /**
+     * Evicts the cached customers of an address, and their json, one key at a time:
+     * a clear of the customers cache would drop all the customers, on all the nodes.
+     */
+    private void evictCustomers(Long addressId) {
+        Cache customers = cacheManager.getCache("customers");
+        Cache customerJson = cacheManager.getCache("customerJson");
+        for (Long customerId : customerRepository.findIdsByAddressId(addressId)) {
+            customers.evict(customerId);
+            customerJson.evict(customerId);
+        }
     }
 
     @Override
-    @CacheEvict(value = "addresses",allEntries = true)
+    @CacheEvict(value = { "addresses", "addressLists" }, allEntries = true)
     public void evictCache() {
-        logger.info("Start evictCache");
-        logger.info("End evictCache");
     }
 
 }
@@ -1,6 +1,8 @@
 package com.teo.crud.data.service;
 
 import java.util.Collection;
+import java.util.List;
+
 import com.teo.crud.data.model.Customer;
 
 /**
@@ -25,8 +27,19 @@ public interface CustomerService {
 	 */
 	Customer create(Customer customer);
 
+	/**
+	 * Create many customers in the database in one transaction.
+	 * The inserts are sent to the database in JDBC batches.
+	 * If one of the customers can't be created, none of them is created.
+	 * 
+	 * @param customers to be created, none of them can have a customerId
+	 * @return the generated customerIds, in the same order as the customers
+	 */
+	List<Long> createAll(List<Customer> customers);
+
 	/**
 	 * Reads or finds a customer from/in the database
+	 * The address of the customer is read too.
 	 * 
 	 * @param id, which is a customer id to be found
 	 * @return The customer entity record with the customerId = id 
@@ -60,11 +73,39 @@ public interface CustomerService {
 
 	/**
 	 * finds all the customer in the database and returns a collection
-	 * of entity records.
+	 * of entity records, with their addresses.
 	 * 
 	 * @return all customer in a Collection<Customer> 
 	 */
 	Collection<Customer> readAll();
+
+	/**
+	 * Reads one page of customers using keyset pagination.
+	 * The customers are ordered by customerId. In order to read the next page,
+	 * call this method again with the customerId of the last customer in the page.
+	 * Unlike readAll, the memory used does not depend on the number of customers
+	 * in the database, only on the limit.
+	 * 
+	 * @param afterId the customerId of the last customer of the previous page
+	 * 			or null to read the first page
+	 * @param limit the maximum number of customers in the page, greater than 0
+	 * @param withAddress true to read the addresses in the same query, 
+	 * 			false to leave the addresses unloaded, when they are not needed
+	 * @return a page of at most limit customers. 
+	 * 			An empty list means there are no more customers.
+	 */
+	List<Customer> readPage(Long afterId, int limit, boolean withAddress);
+
+	/**
+	 * Reads the customers of a list of ids, with their addresses.
+	 * The customers in the cache are not read again, the others are read 
+	 * with one query, whatever their number, and cached.
+	 * 
+	 * @param ids the customerIds of the customers to be read
+	 * @return the customers, in the order of the ids. There is no customer 
+	 * 			for an id that doesn't exist.
+	 */
+	List<Customer> readByIds(List<Long> ids);
 	
 	/**
 	 * If the cache is enabled, each method call in this class 
@@ -1,9 +1,17 @@
 package com.teo.crud.data.service;
 
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,10 +19,18 @@ import org.springframework.transaction.annotation.Transactional;
 import com.teo.crud.data.model.Customer;
 import com.teo.crud.data.repository.CustomerRepository;
 
-import javax.persistence.EntityExistsException;
-import javax.persistence.NoResultException;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.PersistenceContext;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +52,19 @@ public class CustomerServiceImpl implements CustomerService {
 
 	private final CustomerRepository customerRepository;
 
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The number of customers inserted by createAll before the persistence context 
+	 * is flushed and cleared. This should be the same as hibernate.jdbc.batch_size.
+	 */
+	@Value("${customer.batch.size:50}")
+	private int batchSize;
+
 	@Autowired
 	public CustomerServiceImpl(CustomerRepository customerRepository) {
 		this.customerRepository = customerRepository;
@@ -43,40 +72,132 @@ public class CustomerServiceImpl implements CustomerService {
 
 	/**
 	 * finds all the customer in the database and returns a collection
-	 * of entity records.
+	 * of entity records. The addresses are read in the same select.
+	 * The list is cached in customerLists until the next create, update or delete.
+	 * The concurrent misses read the list once (sync).
 	 * 
-	 * @return all customer in a Collection<Customer> 
+	 * @return all customer in an unmodifiable Collection<Customer> 
 	 */
   	@Override
+	@Cacheable(value = "customerLists", key = "'all'", sync = true)
+	@Transactional(readOnly = true)
 	public Collection<Customer> readAll() {
-		logger.info("Start readAll");
-
-		Collection<Customer> customers = customerRepository.findAll();
-
-		logger.info("End readAll");
+		Collection<Customer> customers = Collections.unmodifiableList(customerRepository.findAllWithAddress());
 		return customers;
 	}
 
+	/**
+	 * Reads one page of customers using keyset pagination.
+	 * The customers of the page, and their loaded addresses, are detached once read:
+	 * with open-in-view the pages of a request share the persistence context of the
+	 * request, which would otherwise keep every customer streamed until the response
+	 * is written.
+	 * The pages are not cached: they are read by the streams of all the customers,
+	 * which would fill customerLists with the whole table and evict the list of readAll.
+	 * 
+	 * @param afterId the customerId of the last customer of the previous page
+	 * 			or null to read the first page
+	 * @param limit the maximum number of customers in the page, greater than 0
+	 * @param withAddress true to join fetch the addresses, false to leave them 
+	 * 			as uninitialized lazy references
+	 * @return an unmodifiable page of at most limit customers, ordered by customerId
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Customer> readPage(Long afterId, int limit, boolean withAddress) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("The page limit must be greater than 0.");
+		}
+		Long startAfter = afterId == null ? Long.valueOf(0) : afterId;
+		PageRequest page = PageRequest.of(0, limit);
+		List<Customer> customers = withAddress
+				? customerRepository.findPageAfterWithAddress(startAfter, page)
+				: customerRepository.findPageAfter(startAfter, page);
+		for (Customer customer : customers) {
+			entityManager.detach(customer);
+			if (customer.getAddress() != null && Hibernate.isInitialized(customer.getAddress())) {
+				entityManager.detach(customer.getAddress());
+			}
+		}
+		return Collections.unmodifiableList(customers);
+	}
+
 	/**
 	 * Reads or finds a customer from/in the database
+	 * The address is read in the same select, so the cached customer is complete
+	 * and can be used after the transaction is closed.
+	 * The concurrent misses of the same customer are loaded once (sync): the first 
+	 * one reads the database, the others wait for its result instead of 
+	 * reading the same row, as when a hot customer expires from the cache.
+	 * An id without customer is cached in the missingCustomers cache, so the next
+	 * reads of this id don't query the database until it expires or the customer is created.
 	 * 
 	 * @param id, which is a customer id to be found
 	 * @return The customer entity record with the customerId = id 
 	 * 			if there is no such customer, the method returns null
 	 */
 	@Override
-	@Cacheable("customers")
+	@Cacheable(value = "customers", sync = true)
+	@Transactional(readOnly = true)
 	public Customer read(Long customerId) {
-		logger.info("Start read customerId:{}", customerId);
-
-		Customer address = customerRepository.findOne(customerId);
-
-		logger.info("End read id:{}", customerId);
+		Customer address = customerRepository.findOneWithAddress(customerId);
 		return address;
 	}
 
+	/**
+	 * Reads the customers of a list of ids, with their addresses.
+	 * The customers found in the customers cache, as read() caches them, are not read again.
+	 * The misses are read with one IN query and put in the cache, so the next read() 
+	 * or readByIds() of these customers is a hit. The ids without customer are
+	 * cached as missing, as by read(). They are put with putIfAbsent: a customer
+	 * updated, and put in the cache by update(), while the query ran is not replaced
+	 * by the older value read by the query.
+	 * There is no transaction around the cache lookups, so a request answered from 
+	 * the cache doesn't take a database connection. The query runs in the 
+	 * transaction of the repository.
+	 * 
+	 * @param ids the customerIds of the customers to be read
+	 * @return an unmodifiable list of the customers, in the order of the ids. 
+	 * 			There is no customer for an id that doesn't exist.
+	 */
+	@Override
+	public List<Customer> readByIds(List<Long> ids) {
+		Cache cache = cacheManager.getCache("customers");
+		Map<Long, Customer> found = new HashMap<Long, Customer>();
+		List<Long> misses = new ArrayList<Long>();
+		for (Long id : ids) {
+			ValueWrapper cached = cache.get(id);
+			if (cached != null) {
+				found.put(id, (Customer) cached.get());
+			} else if (!misses.contains(id)) {
+				misses.add(id);
+			}
+		}
+		if (!misses.isEmpty()) {
+			for (Customer customer : customerRepository.findAllWithAddressByIds(misses)) {
+				cache.putIfAbsent(customer.getCustomerId(), customer);
+				found.put(customer.getCustomerId(), customer);
+			}
+			for (Long id : misses) {
+				if (!found.containsKey(id)) {
+					cache.putIfAbsent(id, null);
+				}
+			}
+		}
+		List<Customer> customers = new ArrayList<Customer>(ids.size());
+		for (Long id : ids) {
+			Customer customer = found.get(id);
+			if (customer != null) {
+				customers.add(customer);
+			}
+		}
+		return Collections.unmodifiableList(customers);
+	}
+
 	/**
 	 * Create a customer in the database
+	 * The cached lists of customers are evicted. The created customer is put in the
+	 * cache, which removes its id from the missing customers.
 	 * 
 	 * @param customer to be created
 	 * @return The customer which has been created
@@ -84,10 +205,10 @@ public class CustomerServiceImpl implements CustomerService {
 	 */
 	@Override
 	@Transactional (readOnly = false)
-	@CachePut(value = "customers", key = "#result.customerId")
+	@Caching(
+			put = @CachePut(value = "customers", key = "#result.customerId"),
+			evict = @CacheEvict(value = "customerLists", allEntries = true))
 	public Customer create(Customer customer) {
-		logger.info("Start create");
-
 		// Ensure the entity object to be created does NOT exist in the
 		// repository. Prevent the default behavior of save() which will update
 		// an existing entity if the entity matching the supplied id exists.
@@ -97,65 +218,121 @@ public class CustomerServiceImpl implements CustomerService {
 			throw new EntityExistsException("The id attribute must be null to persist a new entity.");
 		}
 
-		Customer savedCustomer = customerRepository.saveAndFlush(customer);
-
-		logger.info("End create");
+		// no flush: the id comes from the sequence block, the insert is sent 
+		// at the end of the transaction, batched with the other inserts
+		Customer savedCustomer = customerRepository.save(customer);
 		return savedCustomer;
 	}
 
+	/**
+	 * Create many customers in the database in one transaction.
+	 * 
+	 * All the customers are checked before anything is inserted.
+	 * The customers are persisted and every customer.batch.size customers the 
+	 * persistence context is flushed, which sends the inserts as one JDBC batch,
+	 * and cleared, so the memory used does not grow with the number of customers.
+	 * Note that clearing the persistence context detaches all the entities 
+	 * managed by the current transaction.
+	 * The created customers are not added to the cache, the cached lists of customers 
+	 * and the missing customers are evicted.
+	 * 
+	 * @param customers to be created, none of them can have a customerId
+	 * @return the generated customerIds, in the same order as the customers
+	 */
+	@Override
+	@Transactional(readOnly = false)
+	@CacheEvict(value = { "customerLists", "missingCustomers" }, allEntries = true)
+	public List<Long> createAll(List<Customer> customers) {
+		for (Customer customer : customers) {
+			if (customer.getCustomerId() != null) {
+				// Cannot create Customer with specified ID value
+				logger.error("Attempted to create a Customer, but id attribute was not null.");
+				throw new EntityExistsException("The id attribute must be null to persist a new entity.");
+			}
+		}
+
+		List<Long> customerIds = new ArrayList<Long>(customers.size());
+		for (Customer customer : customers) {
+			entityManager.persist(customer);
+			customerIds.add(customer.getCustomerId());
+			if (customerIds.size() % batchSize == 0) {
+				entityManager.flush();
+				entityManager.clear();
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+		return customerIds;
+	}
+
 
 	/**
 	 * Update a customer record in the database.
-	 * The default implementation in the repository is an upsert:
-	 * this means that the record is created if it doesn't exists.
-	 * What we want to do is avoid creating records and only update
-	 * them when the records exist. Therefore we check if the record exists 
-	 * and only then update the record. If the record doens't exist
-	 * we throw a runtime exception
+	 * The default save() of the repository is an upsert and needs a read
+	 * of the customer before it updates it. Instead, the customer is updated with 
+	 * one conditional statement, only if the version of the row is still the version
+	 * of the customer (optimistic locking), so concurrent updates can't overwrite 
+	 * each other and a customer that doesn't exist is not created.
+	 * A customer without version is updated with the version currently in the database.
+	 * A customer managed by the current transaction is flushed instead, hibernate
+	 * checks and increments its version in the same way.
 	 * 
-	 * @param id, which is a customer id to be found
-	 * @return The customer entity record with the customerId = id 
-	 * 			if there is no such customer, the method returns null
+	 * The address of the customer should be complete, as the updated customer 
+	 * is put in the cache.
+	 * The cached json of the customer and the cached lists of customers are evicted.
+	 * 
+	 * @param customer to be updated, with the version it was read with
+	 * @return The updated customer, with the incremented version
 	 * 
-	 * @Exception customer not found
+	 * @throws NoResultException if there is no customer with this customerId
+	 * @throws ObjectOptimisticLockingFailureException if the customer has been updated 
+	 * 			since it was read with this version. The customer is evicted from the cache,
+	 * 			so the next read returns the current version.
 	 */
     @Override
     @Transactional(readOnly = false)
-    @CachePut(value = "customers", key = "#customer.customerId")
+    @Caching(
+            put = @CachePut(value = "customers", key = "#customer.customerId"),
+            evict = {
+                    @CacheEvict(value = "customerJson", key = "#customer.customerId"),
+                    @CacheEvict(value = "customerLists", allEntries = true) })
     public Customer update(Customer customer) {
-        logger.info("Start update customerId: {}", customer.getCustomerId());
-
-        // The default save() does an "upsert", insert if it doens't exist or update
-        // if the record exists.
-        // To enable clean create without updates, we check if the customer already exists
-        // Therefore we don't create new customers
-        Customer customerToUpdate = read(customer.getCustomerId());
-        if (customerToUpdate == null) {
-            // Cannot update Customer that hasn't been persisted
-            logger.error("Attempted to update a Customer, but the entity does not exist.");
-            throw new NoResultException("Requested entity not found.");
+        Long customerId = customer.getCustomerId();
+        if (entityManager.contains(customer)) {
+            entityManager.flush();
+            return customer;
         }
-
-        Customer updatedCustomer = customerRepository.save(customer);
-
-        logger.info("End update id:{}", updatedCustomer.getCustomerId());
-        return updatedCustomer;
+        if (customer.getVersion() == null) {
+            customer.setVersion(customerRepository.findVersion(customerId));
+        }
+        int updated = customer.getVersion() == null ? 0 : customerRepository.updateIfVersion(customer);
+        if (updated == 0) {
+            if (customer.getVersion() == null || !customerRepository.existsById(customerId)) {
+                // Cannot update Customer that hasn't been persisted
+                logger.error("Attempted to update a Customer, but the entity does not exist.");
+                throw new NoResultException("Requested entity not found.");
+            }
+            logger.debug("Customer {} has been updated since version {}", customerId, customer.getVersion());
+            cacheManager.getCache("customers").evict(customerId);
+            throw new ObjectOptimisticLockingFailureException(Customer.class, customerId);
+        }
+        customer.setVersion(customer.getVersion() + 1);
+        return customer;
     }
 
 	/**
 	 * deletes a record if it exists
+	 * The cached json of the customer and the cached lists of customers are evicted.
 	 * 
 	 * @param id is the customerId of the record to be deleted.
 	 */
     @Override
     @Transactional(readOnly = false)
-    @CacheEvict(value = "customers", key = "#customerId")
+    @Caching(evict = {
+            @CacheEvict(value = { "customers", "customerJson" }, key = "#customerId"),
+            @CacheEvict(value = "customerLists", allEntries = true) })
     public void delete(Long customerId) {
-        logger.info("Start delete customerId:{}", customerId);
-
-        customerRepository.delete(customerId);
-
-        logger.info("End delete id:{}", customerId);
+        customerRepository.deleteById(customerId);
     }
 
 	/**
@@ -166,10 +343,8 @@ public class CustomerServiceImpl implements CustomerService {
 	 * @return void, there is no return from this method.
 	 */
     @Override
-    @CacheEvict(value = "customers", allEntries = true)
+    @CacheEvict(value = { "customers", "customerJson", "customerLists" }, allEntries = true)
     public void evictCache() {
-        logger.info("Start evictCache");
-        logger.info("End evictCache");
     }
 
 }
@@ -0,0 +1,26 @@
+package com.teo.crud.data.service;
+
+import java.io.IOException;
+
+/**
+ * Callback used by the services to hand over entities one by one,
+ * for example when all the records of a table are exported.
+ * 
+ * The entity passed to process is only valid during the call,
+ * it is detached from the persistence context after process returns.
+ * 
+ * @author teodor cotruta
+ *
+ * @param <T> the entity type
+ */
+public interface EntityCallback<T> {
+
+	/**
+	 * Process one entity
+	 * 
+	 * @param entity the current entity
+	 * @throws IOException if the entity can't be written, this stops the export
+	 */
+	void process(T entity) throws IOException;
+
+}
@@ -0,0 +1,123 @@
+package com.teo.crud.metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * The metrics of the connection pool: the active, idle and pending connections
+ * and the time spent waiting for a connection.
+ * 
+ * The Tomcat JDBC pool created by Spring Boot is wrapped, when the bean is 
+ * initialized, in a DataSource which times each getConnection. 
+ * The counts are read from the pool when the metrics are written.
+ * 
+ * @author teodor cotruta
+ */
+@Component
+public class DataSourceMetrics implements BeanPostProcessor {
+
+	private final Timer waitTimer = new Timer();
+
+	private org.apache.tomcat.jdbc.pool.DataSource pool;
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof org.apache.tomcat.jdbc.pool.DataSource && pool == null) {
+			pool = (org.apache.tomcat.jdbc.pool.DataSource) bean;
+			return new TimedDataSource(pool);
+		}
+		return bean;
+	}
+
+	/**
+	 * @return true if the application uses a Tomcat JDBC pool, false otherwise,
+	 * 			then there are no pool metrics
+	 */
+	public boolean isPooled() {
+		return pool != null;
+	}
+
+	/**
+	 * @return the number of connections borrowed from the pool
+	 */
+	public int getActive() {
+		return pool.getActive();
+	}
+
+	/**
+	 * @return the number of open connections waiting in the pool
+	 */
+	public int getIdle() {
+		return pool.getIdle();
+	}
+
+	/**
+	 * @return the number of threads waiting for a connection
+	 */
+	public int getPending() {
+		return pool.getWaitCount();
+	}
+
+	/**
+	 * @return the maximum number of connections of the pool
+	 */
+	public int getMaxActive() {
+		return pool.getMaxActive();
+	}
+
+	/**
+	 * @return the timer of the getConnection calls, the failures are the timeouts
+	 */
+	public Timer getWaitTimer() {
+		return waitTimer;
+	}
+
+	/**
+	 * Records the duration of each getConnection in the wait timer.
+	 */
+	private class TimedDataSource extends DelegatingDataSource {
+
+		TimedDataSource(DataSource targetDataSource) {
+			super(targetDataSource);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			long start = System.nanoTime();
+			boolean error = true;
+			try {
+				Connection connection = super.getConnection();
+				error = false;
+				return connection;
+			} finally {
+				waitTimer.record(System.nanoTime() - start, error);
+			}
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			long start = System.nanoTime();
+			boolean error = true;
+			try {
+				Connection connection = super.getConnection(username, password);
+				error = false;
+				return connection;
+			} finally {
+				waitTimer.record(System.nanoTime() - start, error);
+			}
+		}
+	}
+
+}
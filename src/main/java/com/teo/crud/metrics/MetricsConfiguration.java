@@ -0,0 +1,24 @@
+package com.teo.crud.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Adds the MetricsInterceptor to the Spring MVC handler mappings.
+ * 
+ * @author teodor cotruta
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+	@Autowired
+	private MetricsInterceptor metricsInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(metricsInterceptor);
+	}
+
+}
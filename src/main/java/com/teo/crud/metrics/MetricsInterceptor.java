@@ -0,0 +1,87 @@
+package com.teo.crud.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Records the duration of each request handled by a controller method
+ * in the handler timer of the method, like CustomerREST.getCustomer,
+ * and logs one INFO line for the request, with the com.teo.crud.request logger:
+ * 
+ * method=GET path=/customer/1 handler=CustomerREST.getCustomer status=200 ms=1.25 queries=1 queryMs=0.8 error=-
+ * 
+ * A request is counted as an error when the handler throws an exception 
+ * or the response status is 5xx. The 4xx statuses, like 404 for a missing 
+ * customer or 409 for a stale version, are answers, not errors.
+ * The duration includes the json serialization, but not the writing 
+ * of the response after the handler returns.
+ * For an async request, the duration is from the first dispatch, which starts 
+ * the request, to the end of the dispatch which writes the result.
+ * 
+ * @author teodor cotruta
+ */
+@Component
+public class MetricsInterceptor implements AsyncHandlerInterceptor {
+
+	private static final Logger requestLogger = LoggerFactory.getLogger("com.teo.crud.request");
+
+	private static final String START_ATTRIBUTE = MetricsInterceptor.class.getName() + ".start";
+
+	private static final String QUERIES_ATTRIBUTE = MetricsInterceptor.class.getName() + ".queries";
+
+	@Autowired
+	private MetricsRegistry metricsRegistry;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!(handler instanceof HandlerMethod)) {
+			return true;
+		}
+		if (request.getAttribute(START_ATTRIBUTE) == null) {
+			request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+			request.setAttribute(QUERIES_ATTRIBUTE, RequestQueries.start());
+		} else {
+			// the dispatch of the result of an async request
+			RequestQueries.resume((RequestQueries) request.getAttribute(QUERIES_ATTRIBUTE));
+		}
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		RequestQueries.stop();
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+		if (start == null) {
+			return;
+		}
+		RequestQueries.stop();
+		long nanos = System.nanoTime() - start;
+		HandlerMethod handlerMethod = (HandlerMethod) handler;
+		String name = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+		int status = response.getStatus();
+		metricsRegistry.handlerTimer(name).record(nanos, ex != null || status >= 500);
+
+		if (requestLogger.isInfoEnabled()) {
+			RequestQueries queries = (RequestQueries) request.getAttribute(QUERIES_ATTRIBUTE);
+			requestLogger.info("method={} path={} handler={} status={} ms={} queries={} queryMs={} error={}",
+					request.getMethod(), request.getRequestURI(), name, status, millis(nanos),
+					queries.getCount(), millis(queries.getNanos()), ex != null ? ex.getClass().getSimpleName() : "-");
+		}
+	}
+
+	private static double millis(long nanos) {
+		return (nanos / 1000) / 1000.0;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.teo.crud.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * The timers of the application, created on their first use:
+ * - the handler timers, one by REST handler method, like CustomerREST.getCustomer, 
+ *   recorded by MetricsInterceptor
+ * - the query timers, one by repository method, like CustomerRepository.findOne, 
+ *   recorded by RepositoryMetricsAspect
+ * 
+ * They are exposed, with the cache statistics, by GET /metrics.
+ * 
+ * @author teodor cotruta
+ */
+@Component
+public class MetricsRegistry {
+
+	private final ConcurrentMap<String, Timer> handlerTimers = new ConcurrentHashMap<String, Timer>();
+
+	private final ConcurrentMap<String, Timer> queryTimers = new ConcurrentHashMap<String, Timer>();
+
+	/**
+	 * @param handler like CustomerREST.getCustomer
+	 * @return the timer of the handler
+	 */
+	public Timer handlerTimer(String handler) {
+		return timer(handlerTimers, handler);
+	}
+
+	/**
+	 * @param query like CustomerRepository.findOne
+	 * @return the timer of the query
+	 */
+	public Timer queryTimer(String query) {
+		return timer(queryTimers, query);
+	}
+
+	/**
+	 * @return the handler timers, by handler name
+	 */
+	public SortedMap<String, Timer> getHandlerTimers() {
+		return new TreeMap<String, Timer>(handlerTimers);
+	}
+
+	/**
+	 * @return the query timers, by query name
+	 */
+	public SortedMap<String, Timer> getQueryTimers() {
+		return new TreeMap<String, Timer>(queryTimers);
+	}
+
+	private static Timer timer(ConcurrentMap<String, Timer> timers, String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			Timer newTimer = new Timer();
+			timer = timers.putIfAbsent(name, newTimer);
+			if (timer == null) {
+				timer = newTimer;
+			}
+		}
+		return timer;
+	}
+
+}
@@ -0,0 +1,201 @@
+package com.teo.crud.metrics;
+
+import java.util.Map;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.teo.crud.async.BoundedExecutor;
+
+/**
+ * Writes the metrics in the Prometheus text exposition format, version 0.0.4:
+ * - http_server_requests_seconds, a summary by handler, with the 0.5, 0.99 and 0.999
+ *   quantiles, and http_server_requests_errors_total
+ * - repository_query_seconds, a summary by query, and repository_query_errors_total
+ * - cache_size, cache_requests_total by result, hit or miss, and cache_evictions_total,
+ *   of each Caffeine cache. The counts are 0 for a cache without recordStats.
+ * - datasource_connections by state, active, idle, pending or max, and 
+ *   datasource_connection_wait_seconds, a summary of the getConnection durations
+ * - async_executor_threads by state, active or all, async_executor_queued_requests,
+ *   async_executor_queue_seconds, a summary of the time spent in the queue, and 
+ *   async_executor_rejected_total by reason, queue full or timeout, and 
+ *   async_executor_running_timeouts_total, the requests answered with 504
+ * - log_queue_events by state, queued or max, the logging events waiting to be written
+ *   by the ASYNC_CONSOLE appender of logback.xml, which drops the events of a full queue
+ * 
+ * The quantiles and the maximum are those of the calls of the last minute, the counts
+ * and the sums are counted since the start of the application, see Timer.
+ * 
+ * @author teodor cotruta
+ */
+public class PrometheusWriter {
+
+	/**
+	 * The content type of the Prometheus text format.
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * The name of the async appender of logback.xml.
+	 */
+	private static final String ASYNC_APPENDER = "ASYNC_CONSOLE";
+
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	private final StringBuilder out = new StringBuilder();
+
+	/**
+	 * @param metricsRegistry the handler and query timers
+	 * @param cacheManager the caches of the application
+	 * @param dataSourceMetrics the connection pool metrics
+	 * @param executor the executor of the async requests
+	 * @return the metrics as text
+	 */
+	public static String write(MetricsRegistry metricsRegistry, CacheManager cacheManager,
+			DataSourceMetrics dataSourceMetrics, BoundedExecutor executor) {
+		PrometheusWriter writer = new PrometheusWriter();
+		writer.writeTimers("http_server_requests", "handler", "REST handler", metricsRegistry.getHandlerTimers());
+		writer.writeTimers("repository_query", "query", "repository query", metricsRegistry.getQueryTimers());
+		writer.writeCaches(cacheManager);
+		writer.writeDataSource(dataSourceMetrics);
+		writer.writeExecutor(executor);
+		writer.writeLogging();
+		return writer.out.toString();
+	}
+
+	private void writeTimers(String name, String label, String description, Map<String, Timer> timers) {
+		header(name + "_seconds", "summary", "Duration of the calls of each " + description);
+		for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+			String labels = label + "=\"" + escape(entry.getKey()) + "\"";
+			Timer timer = entry.getValue();
+			for (double quantile : QUANTILES) {
+				sample(name + "_seconds", labels + ",quantile=\"" + quantile + "\"",
+						timer.getSecondsAtPercentile(quantile * 100));
+			}
+			sample(name + "_seconds_count", labels, timer.getCount());
+			sample(name + "_seconds_sum", labels, timer.getTotalSeconds());
+		}
+		header(name + "_seconds_max", "gauge", "Duration of the slowest call of each " + description);
+		for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+			sample(name + "_seconds_max", label + "=\"" + escape(entry.getKey()) + "\"", entry.getValue().getMaxSeconds());
+		}
+		header(name + "_errors_total", "counter", "Failed calls of each " + description);
+		for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+			sample(name + "_errors_total", label + "=\"" + escape(entry.getKey()) + "\"", entry.getValue().getErrorCount());
+		}
+	}
+
+	private void writeCaches(CacheManager cacheManager) {
+		StringBuilder sizes = new StringBuilder();
+		StringBuilder requests = new StringBuilder();
+		StringBuilder evictions = new StringBuilder();
+		for (String name : cacheManager.getCacheNames()) {
+			Cache cache = cacheManager.getCache(name);
+			if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+				continue;
+			}
+			com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache();
+			CacheStats stats = nativeCache.stats();
+			String labels = "cache=\"" + escape(name) + "\"";
+			line(sizes, "cache_size", labels, nativeCache.estimatedSize());
+			line(requests, "cache_requests_total", labels + ",result=\"hit\"", stats.hitCount());
+			line(requests, "cache_requests_total", labels + ",result=\"miss\"", stats.missCount());
+			line(evictions, "cache_evictions_total", labels, stats.evictionCount());
+		}
+		header("cache_size", "gauge", "Number of entries of each cache");
+		out.append(sizes);
+		header("cache_requests_total", "counter", "Reads of each cache, by result");
+		out.append(requests);
+		header("cache_evictions_total", "counter", "Entries evicted from each cache by its size or expiry");
+		out.append(evictions);
+	}
+
+	private void writeDataSource(DataSourceMetrics dataSourceMetrics) {
+		if (!dataSourceMetrics.isPooled()) {
+			return;
+		}
+		header("datasource_connections", "gauge", "Connections of the pool, by state");
+		sample("datasource_connections", "state=\"active\"", dataSourceMetrics.getActive());
+		sample("datasource_connections", "state=\"idle\"", dataSourceMetrics.getIdle());
+		sample("datasource_connections", "state=\"pending\"", dataSourceMetrics.getPending());
+		sample("datasource_connections", "state=\"max\"", dataSourceMetrics.getMaxActive());
+		Timer timer = dataSourceMetrics.getWaitTimer();
+		header("datasource_connection_wait_seconds", "summary", "Duration of the waits for a connection of the pool");
+		for (double quantile : QUANTILES) {
+			out.append("datasource_connection_wait_seconds{quantile=\"").append(quantile).append("\"} ")
+					.append(timer.getSecondsAtPercentile(quantile * 100)).append('\n');
+		}
+		out.append("datasource_connection_wait_seconds_count ").append(timer.getCount()).append('\n');
+		out.append("datasource_connection_wait_seconds_sum ").append(timer.getTotalSeconds()).append('\n');
+		header("datasource_connection_timeouts_total", "counter", "Waits for a connection which failed");
+		out.append("datasource_connection_timeouts_total ").append(timer.getErrorCount()).append('\n');
+	}
+
+	private void writeExecutor(BoundedExecutor executor) {
+		header("async_executor_threads", "gauge", "Threads of the executor of the async requests, by state");
+		sample("async_executor_threads", "state=\"active\"", executor.getActiveCount());
+		sample("async_executor_threads", "state=\"all\"", executor.getThreads());
+		header("async_executor_queued_requests", "gauge", "Async requests waiting for a thread");
+		out.append("async_executor_queued_requests ").append(executor.getQueuedCount()).append('\n');
+		Timer timer = executor.getQueueTimer();
+		header("async_executor_queue_seconds", "summary", "Time spent by the async requests waiting for a thread");
+		for (double quantile : QUANTILES) {
+			out.append("async_executor_queue_seconds{quantile=\"").append(quantile).append("\"} ")
+					.append(timer.getSecondsAtPercentile(quantile * 100)).append('\n');
+		}
+		out.append("async_executor_queue_seconds_count ").append(timer.getCount()).append('\n');
+		out.append("async_executor_queue_seconds_sum ").append(timer.getTotalSeconds()).append('\n');
+		header("async_executor_rejected_total", "counter", "Async requests answered with 503, by reason");
+		sample("async_executor_rejected_total", "reason=\"queue_full\"", executor.getRejectedCount());
+		sample("async_executor_rejected_total", "reason=\"timeout\"", executor.getTimedOutCount());
+		header("async_executor_running_timeouts_total", "counter",
+				"Async requests answered with 504 while their service call was still running");
+		out.append("async_executor_running_timeouts_total ").append(executor.getRunningTimedOutCount()).append('\n');
+	}
+
+	private void writeLogging() {
+		ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+		if (!(loggerFactory instanceof LoggerContext)) {
+			return;
+		}
+		Appender<?> appender = ((LoggerContext) loggerFactory).getLogger(Logger.ROOT_LOGGER_NAME)
+				.getAppender(ASYNC_APPENDER);
+		if (!(appender instanceof AsyncAppenderBase)) {
+			return;
+		}
+		AsyncAppenderBase<?> asyncAppender = (AsyncAppenderBase<?>) appender;
+		header("log_queue_events", "gauge", "Logging events waiting to be written, by state");
+		sample("log_queue_events", "state=\"queued\"", asyncAppender.getNumberOfElementsInQueue());
+		sample("log_queue_events", "state=\"max\"", asyncAppender.getQueueSize());
+	}
+
+	private void header(String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private void sample(String name, String labels, double value) {
+		line(out, name, labels, value);
+	}
+
+	private void sample(String name, String labels, long value) {
+		line(out, name, labels, value);
+	}
+
+	private static void line(StringBuilder out, String name, String labels, Object value) {
+		out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.teo.crud.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the duration of each call of a Spring Data repository in the query 
+ * timer of the method, like CustomerRepository.findOne, and in the 
+ * RequestQueries of the request.
+ * 
+ * The duration is the one of the database call, plus the mapping of the rows 
+ * to entities. A call that throws an exception is counted as an error.
+ * 
+ * @author teodor cotruta
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+	@Autowired
+	private MetricsRegistry metricsRegistry;
+
+	/**
+	 * The name of the repository interface, by class of the Spring Data proxy.
+	 */
+	private final ConcurrentMap<Class<?>, String> repositoryNames = new ConcurrentHashMap<Class<?>, String>();
+
+	@Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+	public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			Object result = joinPoint.proceed();
+			error = false;
+			return result;
+		} finally {
+			long nanos = System.nanoTime() - start;
+			String name = repositoryName(joinPoint.getTarget().getClass()) + "." + joinPoint.getSignature().getName();
+			metricsRegistry.queryTimer(name).record(nanos, error);
+			RequestQueries.add(nanos);
+		}
+	}
+
+	/**
+	 * @param proxyClass the class of the Spring Data proxy of a repository
+	 * @return the simple name of the repository interface of the application, like CustomerRepository
+	 */
+	private String repositoryName(Class<?> proxyClass) {
+		String name = repositoryNames.get(proxyClass);
+		if (name == null) {
+			name = proxyClass.getSimpleName();
+			for (Class<?> type : proxyClass.getInterfaces()) {
+				if (Repository.class.isAssignableFrom(type) && !type.getName().startsWith("org.springframework.")) {
+					name = type.getSimpleName();
+				}
+			}
+			repositoryNames.put(proxyClass, name);
+		}
+		return name;
+	}
+
+}
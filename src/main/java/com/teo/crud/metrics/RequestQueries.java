@@ -0,0 +1,77 @@
+package com.teo.crud.metrics;
+
+/**
+ * The number and the duration of the repository calls of the current request,
+ * kept by thread, for the request log line of MetricsInterceptor.
+ * 
+ * Nothing is kept for the calls made outside of a request.
+ * The counts of an async request are passed, with current and resume, to the 
+ * threads working for the request, one after the other.
+ * 
+ * @author teodor cotruta
+ */
+public class RequestQueries {
+
+	private static final ThreadLocal<RequestQueries> CURRENT = new ThreadLocal<RequestQueries>();
+
+	private int count;
+
+	private long nanos;
+
+	/**
+	 * Starts counting the repository calls of the thread.
+	 * 
+	 * @return the new, empty, counts
+	 */
+	static RequestQueries start() {
+		RequestQueries queries = new RequestQueries();
+		CURRENT.set(queries);
+		return queries;
+	}
+
+	/**
+	 * @return the counts of the request of the thread, null outside of a request
+	 */
+	public static RequestQueries current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Counts the repository calls of the thread in the counts of a request
+	 * started by another thread.
+	 * 
+	 * @param queries the counts of the request, can be null
+	 */
+	public static void resume(RequestQueries queries) {
+		if (queries != null) {
+			CURRENT.set(queries);
+		}
+	}
+
+	/**
+	 * Stops counting the repository calls of the thread.
+	 */
+	public static void stop() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * @param nanos the duration of a repository call of the thread
+	 */
+	static void add(long nanos) {
+		RequestQueries queries = CURRENT.get();
+		if (queries != null) {
+			queries.count++;
+			queries.nanos += nanos;
+		}
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	long getNanos() {
+		return nanos;
+	}
+
+}
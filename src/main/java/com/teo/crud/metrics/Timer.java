@@ -0,0 +1,151 @@
+package com.teo.crud.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The count, the errors and the latency distribution of one kind of call,
+ * like a REST handler or a repository query.
+ *
+ * The count, the errors and the total duration are counted since the start of the
+ * application. The latencies are recorded in microseconds, in an HdrHistogram Recorder
+ * with 3 significant digits, and the percentiles and the maximum are those of the
+ * calls of the last window, one minute by default: a slow minute is seen in the
+ * p99 of the next scrape, instead of being diluted in the calls since the start.
+ *
+ * The window is made of WINDOW_SLOTS slots. A read of the percentiles takes the
+ * interval histogram of the calls recorded since the previous read, adds it to the slot
+ * of the current time, and merges the slots of the window. The calls recorded since
+ * the previous read are always in the window, even if it was longer ago than the window.
+ * Recording is wait free, so the timer can be shared by all the request threads.
+ *
+ * @author teodor cotruta
+ */
+public class Timer {
+
+	/**
+	 * The window of the percentiles, unless given to the constructor.
+	 */
+	public static final long DEFAULT_WINDOW_MILLIS = 60000;
+
+	static final int WINDOW_SLOTS = 6;
+
+	private final Recorder recorder = new Recorder(3);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final long slotNanos;
+
+	private final Histogram[] slots = new Histogram[WINDOW_SLOTS];
+
+	private final long[] slotIndexes = new long[WINDOW_SLOTS];
+
+	private final Histogram window = new Histogram(3);
+
+	private Histogram interval;
+
+	public Timer() {
+		this(DEFAULT_WINDOW_MILLIS);
+	}
+
+	/**
+	 * @param windowMillis the window of the percentiles and of the maximum
+	 */
+	public Timer(long windowMillis) {
+		this.slotNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowMillis) / WINDOW_SLOTS);
+		for (int i = 0; i < WINDOW_SLOTS; i++) {
+			slots[i] = new Histogram(3);
+			slotIndexes[i] = Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * @param nanos the duration of the call
+	 * @param error true if the call failed
+	 */
+	public void record(long nanos, boolean error) {
+		recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		if (error) {
+			errors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of calls, failed or not, since the start
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the number of failed calls since the start
+	 */
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	/**
+	 * @return the sum of the durations of all the calls since the start, in seconds
+	 */
+	public double getTotalSeconds() {
+		return totalNanos.get() / 1e9;
+	}
+
+	/**
+	 * @param percentile like 99.9
+	 * @return the duration, in seconds, of the calls of the window at that percentile
+	 */
+	public double getSecondsAtPercentile(double percentile) {
+		synchronized (window) {
+			return window().getValueAtPercentile(percentile) / 1e6;
+		}
+	}
+
+	/**
+	 * @return the duration of the slowest call of the window, in seconds
+	 */
+	public double getMaxSeconds() {
+		synchronized (window) {
+			return window().getMaxValue() / 1e6;
+		}
+	}
+
+	/**
+	 * The current time, overridden by the tests.
+	 */
+	long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Moves the calls recorded since the previous read to the current slot
+	 * and merges the slots of the window, with the lock of the window.
+	 */
+	private Histogram window() {
+		long slotIndex = nanoTime() / slotNanos;
+		int slot = (int) Math.floorMod(slotIndex, (long) WINDOW_SLOTS);
+		if (slotIndexes[slot] != slotIndex) {
+			slots[slot].reset();
+			slotIndexes[slot] = slotIndex;
+		}
+		interval = recorder.getIntervalHistogram(interval);
+		slots[slot].add(interval);
+		window.reset();
+		for (int i = 0; i < WINDOW_SLOTS; i++) {
+			if (slotIndexes[i] > slotIndex - WINDOW_SLOTS) {
+				window.add(slots[i]);
+			}
+		}
+		return window;
+	}
+
+}
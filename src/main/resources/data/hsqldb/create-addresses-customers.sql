@@ -2,28 +2,40 @@ DROP TABLE CUSTOMER IF EXISTS;
 
 DROP TABLE ADDRESS IF EXISTS;
 
+DROP SEQUENCE CUSTOMER_SEQ IF EXISTS;
+
+DROP SEQUENCE ADDRESS_SEQ IF EXISTS;
+
 CREATE TABLE ADDRESS
 ( 
-  ADDRESS_ID BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1) NOT NULL 
+  ADDRESS_ID BIGINT NOT NULL 
 , STREET_NUMBER VARCHAR(8)
 , STREET_NAME VARCHAR(64) NOT NULL 
 , STREET_TYPE VARCHAR(32) 
 , SUBURB VARCHAR(64) NULL 
 , CITY VARCHAR(64) NULL 
 , COUNTRY VARCHAR(64) NULL 
+, VERSION BIGINT DEFAULT 0 NOT NULL 
 , PRIMARY KEY ( ADDRESS_ID ) 
 );
 
 
 CREATE TABLE CUSTOMER
 ( 
- CUSTOMER_ID BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1) NOT NULL,
+ CUSTOMER_ID BIGINT NOT NULL,
  NAME VARCHAR(50) NOT NULL, 
  ADDRESS_ID BIGINT NULL, 
  TELEPHONE_NUMBER VARCHAR(64) NULL,
+ VERSION BIGINT DEFAULT 0 NOT NULL,
  PRIMARY KEY ( CUSTOMER_ID ) 
 );
 
+-- the ids are allocated by hibernate in blocks (pooled-lo optimizer)
+-- the increment has to match IdAllocation.ALLOCATION_SIZE
+CREATE SEQUENCE ADDRESS_SEQ AS BIGINT START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE CUSTOMER_SEQ AS BIGINT START WITH 1 INCREMENT BY 50;
+
 ALTER TABLE CUSTOMER ADD CONSTRAINT FK_ADDRESS FOREIGN KEY ( ADDRESS_ID )
  REFERENCES ADDRESS ( ADDRESS_ID );
 
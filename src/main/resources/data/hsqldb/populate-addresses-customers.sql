@@ -1,15 +1,21 @@
-INSERT INTO ADDRESS (STREET_NUMBER, STREET_NAME, STREET_TYPE, SUBURB, CITY, COUNTRY )
+INSERT INTO ADDRESS (ADDRESS_ID, STREET_NUMBER, STREET_NAME, STREET_TYPE, SUBURB, CITY, COUNTRY )
 VALUES 
-('2/34', 'BIG STREET', 'AVENUE', 'NEW MARKET', 'AUCKLAND', 'NEW ZEALAND'),
-('5', 'SINGLEVIEW', 'STREET', 'TAKAPUNA', 'AUCKLAND', 'NEW ZEALAND'),
-('65b', 'QUEEN', 'STREET', 'ELLERSLIE', 'AUCKLAND', 'NEW ZEALAND'),
-('125/42', 'VICTORIA', 'LANE', 'GREENHORN', 'AUCKLAND', 'NEW ZEALAND'),
-('9', 'BIG STREET', 'STREET', 'LINCOLN', 'AUCKLAND', 'NEW ZEALAND');
+(1, '2/34', 'BIG STREET', 'AVENUE', 'NEW MARKET', 'AUCKLAND', 'NEW ZEALAND'),
+(2, '5', 'SINGLEVIEW', 'STREET', 'TAKAPUNA', 'AUCKLAND', 'NEW ZEALAND'),
+(3, '65b', 'QUEEN', 'STREET', 'ELLERSLIE', 'AUCKLAND', 'NEW ZEALAND'),
+(4, '125/42', 'VICTORIA', 'LANE', 'GREENHORN', 'AUCKLAND', 'NEW ZEALAND'),
+(5, '9', 'BIG STREET', 'STREET', 'LINCOLN', 'AUCKLAND', 'NEW ZEALAND');
 
-INSERT INTO CUSTOMER (NAME, ADDRESS_ID, TELEPHONE_NUMBER)
+-- new addresses get ids after the sample data
+ALTER SEQUENCE ADDRESS_SEQ RESTART WITH 6;
+
+INSERT INTO CUSTOMER (CUSTOMER_ID, NAME, ADDRESS_ID, TELEPHONE_NUMBER)
 VALUES
-('JEREMY', 1, '0800 000 ZERO'),
-('MARIA', 2, '+64 09 3452'),
-('ISABELLE', 2, 'CAN BE LETTERS'),
-('MILES', 3, '09 449 1234');
+(1, 'JEREMY', 1, '0800 000 ZERO'),
+(2, 'MARIA', 2, '+64 09 3452'),
+(3, 'ISABELLE', 2, 'CAN BE LETTERS'),
+(4, 'MILES', 3, '09 449 1234');
+
+-- new customers get ids after the sample data
+ALTER SEQUENCE CUSTOMER_SEQ RESTART WITH 5;
 
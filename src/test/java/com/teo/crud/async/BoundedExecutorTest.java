@@ -0,0 +1,89 @@
+package com.teo.crud.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Tests of the timeouts of the BoundedExecutor requests. The timeouts are fired by the
+ * test, as the servlet container fires them.
+ */
+public class BoundedExecutorTest {
+
+	private final BoundedExecutor executor = new BoundedExecutor(1, 10, 10000, false);
+
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final Callable<ResponseEntity<String>> blocked = new Callable<ResponseEntity<String>>() {
+		@Override
+		public ResponseEntity<String> call() throws Exception {
+			calls.incrementAndGet();
+			started.countDown();
+			release.await();
+			return new ResponseEntity<String>("CREATED", HttpStatus.OK);
+		}
+	};
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testQueuedRequestTimedOut() throws Exception {
+
+		executor.submit(blocked);
+		DeferredResult<ResponseEntity<String>> queued = executor.submit(blocked);
+
+		((BoundedExecutor.Request<?>) queued).timeout();
+
+		ResponseEntity<?> response = (ResponseEntity<?>) queued.getResult();
+		Assert.assertEquals("Expected HTTP status 503", HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+		Assert.assertEquals("Expected a Retry-After header", "1", response.getHeaders().getFirst("Retry-After"));
+
+		release.countDown();
+		awaitResult(executor.submit(blocked));
+
+		Assert.assertEquals("Expected the timed out request not run", 2, calls.get());
+		Assert.assertEquals("Expected one timed out request", 1, executor.getTimedOutCount());
+
+	}
+
+	@Test
+	public void testRunningRequestTimedOut() throws Exception {
+
+		DeferredResult<ResponseEntity<String>> running = executor.submit(blocked);
+		Assert.assertTrue("Expected the request started", started.await(10, TimeUnit.SECONDS));
+
+		((BoundedExecutor.Request<?>) running).timeout();
+
+		ResponseEntity<?> response = (ResponseEntity<?>) running.getResult();
+		Assert.assertEquals("Expected HTTP status 504", HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+		Assert.assertNull("Expected no Retry-After header", response.getHeaders().getFirst("Retry-After"));
+		Assert.assertEquals("Expected one running request timed out", 1, executor.getRunningTimedOutCount());
+		Assert.assertEquals("Expected no request rejected by timeout", 0, executor.getTimedOutCount());
+
+	}
+
+	private static void awaitResult(DeferredResult<?> result) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!result.hasResult() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue("Expected the request answered", result.hasResult());
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.teo.crud.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.teo.crud.Application;
+import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.CustomerService;
+import com.teo.crud.metrics.MetricsRegistry;
+import com.teo.crud.metrics.Timer;
+
+/**
+ * Tests of the CacheWarmUp: the hottest ids saved from the caches are read back
+ * into the caches, by batches of one id on two threads.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class)
+public class CacheWarmUpTest {
+
+	private static final File FILE = new File("target/cache-warmup-test.properties");
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private CustomerService customerService;
+
+	@Autowired
+	private AddressService addressService;
+
+	@Autowired
+	private MetricsRegistry metricsRegistry;
+
+	private CacheWarmUp warmUp;
+
+	@Before
+	public void setUp() {
+		FILE.delete();
+		customerService.evictCache();
+		addressService.evictCache();
+		warmUp = new CacheWarmUp(cacheManager, customerService, addressService, true, FILE.getPath(), 100, 1, 2, 60);
+	}
+
+	@After
+	public void tearDown() {
+		FILE.delete();
+	}
+
+	@Test
+	public void testSaveAndWarmUp() throws Exception {
+
+		customerService.read(Long.valueOf(1));
+		customerService.read(Long.valueOf(2));
+		addressService.read(Long.valueOf(1));
+
+		warmUp.saveHottestIds();
+
+		Properties ids = new Properties();
+		InputStream in = new FileInputStream(FILE);
+		try {
+			ids.load(in);
+		} finally {
+			in.close();
+		}
+		Assert.assertTrue("failure - expected the customer ids saved",
+				ids.getProperty("customers").matches("1,2|2,1"));
+		Assert.assertEquals("failure - expected the address ids saved", "1", ids.getProperty("addresses"));
+
+		customerService.evictCache();
+		addressService.evictCache();
+
+		Assert.assertEquals("failure - expected the saved records read", 3, warmUp.warmUp());
+
+		Timer customerQueries = metricsRegistry.queryTimer("CustomerRepository.findOneWithAddress");
+		Timer addressQueries = metricsRegistry.queryTimer("AddressRepository.findById");
+		long customersBefore = customerQueries.getCount();
+		long addressesBefore = addressQueries.getCount();
+		Assert.assertNotNull("failure - expected customer 1", customerService.read(Long.valueOf(1)));
+		Assert.assertNotNull("failure - expected customer 2", customerService.read(Long.valueOf(2)));
+		Assert.assertNotNull("failure - expected address 1", addressService.read(Long.valueOf(1)));
+		Assert.assertEquals("failure - expected the customers read from the cache", customersBefore,
+				customerQueries.getCount());
+		Assert.assertEquals("failure - expected the address read from the cache", addressesBefore,
+				addressQueries.getCount());
+
+	}
+
+	@Test
+	public void testWarmUpWithoutFile() throws Exception {
+
+		Assert.assertEquals("failure - expected nothing read without file", 0, warmUp.warmUp());
+
+	}
+
+	@Test
+	public void testHottestKeysLimit() {
+
+		customerService.read(Long.valueOf(1));
+		customerService.read(Long.valueOf(2));
+		customerService.read(Long.valueOf(3));
+
+		Assert.assertEquals("failure - expected at most limit keys", 2,
+				CacheWarmUp.hottestKeys(cacheManager.getCache("customers"), 2).size());
+
+	}
+
+}
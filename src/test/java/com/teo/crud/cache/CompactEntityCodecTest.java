@@ -0,0 +1,171 @@
+package com.teo.crud.cache;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.hibernate.Hibernate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.teo.crud.Application;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Round trip tests of the CompactEntityCodec. The address proxies need the
+ * lazy proxies of the entity manager.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class)
+@Transactional
+public class CompactEntityCodecTest {
+
+	private final CompactEntityCodec codec = new CompactEntityCodec();
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	public void testCustomerWithAddress() {
+
+		Customer customer = customer(1L, address(2L));
+
+		Customer decoded = (Customer) codec.decode(codec.encode(customer));
+
+		assertCustomerEquals(customer, decoded);
+		assertAddressEquals(customer.getAddress(), decoded.getAddress());
+
+	}
+
+	@Test
+	public void testCustomerWithoutAddress() {
+
+		Customer customer = customer(1L, null);
+
+		Customer decoded = (Customer) codec.decode(codec.encode(customer));
+
+		assertCustomerEquals(customer, decoded);
+		Assert.assertNull("failure - expected no address", decoded.getAddress());
+
+	}
+
+	@Test
+	public void testNullFields() {
+
+		Customer customer = new Customer();
+		customer.setAddress(new Address());
+
+		Customer decoded = (Customer) codec.decode(codec.encode(customer));
+
+		assertCustomerEquals(customer, decoded);
+		assertAddressEquals(customer.getAddress(), decoded.getAddress());
+
+	}
+
+	@Test
+	public void testLargeIdsAndUnicode() {
+
+		Address address = address(Long.MAX_VALUE);
+		address.setStreetName("Ştefan cel Mare 東京 🏠");
+		address.setCity("");
+		Customer customer = customer(-1L, address);
+		customer.setVersion(128L);
+
+		Customer decoded = (Customer) codec.decode(codec.encode(customer));
+
+		assertCustomerEquals(customer, decoded);
+		assertAddressEquals(customer.getAddress(), decoded.getAddress());
+
+	}
+
+	@Test
+	public void testAddress() {
+
+		Address address = address(300L);
+
+		assertAddressEquals(address, (Address) codec.decode(codec.encode(address)));
+
+	}
+
+	@Test
+	public void testAddressProxyLoaded() {
+
+		Address reference = entityManager.getReference(Address.class, 1L);
+		Customer customer = customer(1L, reference);
+
+		Customer decoded = (Customer) codec.decode(codec.encode(customer));
+
+		Assert.assertTrue("failure - expected the address loaded", Hibernate.isInitialized(reference));
+		assertAddressEquals(reference, decoded.getAddress());
+		Assert.assertEquals("failure - expected the address city", "AUCKLAND", decoded.getAddress().getCity());
+		Assert.assertNotNull("failure - expected the address version", decoded.getAddress().getVersion());
+
+	}
+
+	@Test
+	public void testOtherValuesSerialized() {
+
+		Assert.assertEquals("failure - expected the string", "MARIA", codec.decode(codec.encode("MARIA")));
+
+	}
+
+	@Test
+	public void testSmallerThanJavaSerialization() {
+
+		Customer customer = customer(1L, address(2L));
+
+		int compact = codec.encode(customer).length;
+		int serialized = new JavaSerializationCodec().encode(customer).length;
+
+		Assert.assertTrue("failure - expected " + compact + " bytes less than a quarter of " + serialized,
+				compact * 4 < serialized);
+
+	}
+
+	private static Customer customer(Long id, Address address) {
+		Customer customer = new Customer();
+		customer.setCustomerId(id);
+		customer.setVersion(3L);
+		customer.setName("MARIA POPESCU");
+		customer.setTelephoneNumber("0412345678");
+		customer.setAddress(address);
+		return customer;
+	}
+
+	private static Address address(Long id) {
+		Address address = new Address();
+		address.setAddressId(id);
+		address.setVersion(0L);
+		address.setStreetNumber("2/34");
+		address.setStreetName("BIG STREET");
+		address.setStreetType("AVENUE");
+		address.setSuburb("NEW MARKET");
+		address.setCity("AUCKLAND");
+		address.setCountry("NEW ZEALAND");
+		return address;
+	}
+
+	private static void assertCustomerEquals(Customer expected, Customer actual) {
+		Assert.assertEquals("failure - expected the id", expected.getCustomerId(), actual.getCustomerId());
+		Assert.assertEquals("failure - expected the version", expected.getVersion(), actual.getVersion());
+		Assert.assertEquals("failure - expected the name", expected.getName(), actual.getName());
+		Assert.assertEquals("failure - expected the telephone number", expected.getTelephoneNumber(),
+				actual.getTelephoneNumber());
+	}
+
+	private static void assertAddressEquals(Address expected, Address actual) {
+		Assert.assertEquals("failure - expected the id", expected.getAddressId(), actual.getAddressId());
+		Assert.assertEquals("failure - expected the version", expected.getVersion(), actual.getVersion());
+		Assert.assertEquals("failure - expected the street number", expected.getStreetNumber(), actual.getStreetNumber());
+		Assert.assertEquals("failure - expected the street name", expected.getStreetName(), actual.getStreetName());
+		Assert.assertEquals("failure - expected the street type", expected.getStreetType(), actual.getStreetType());
+		Assert.assertEquals("failure - expected the suburb", expected.getSuburb(), actual.getSuburb());
+		Assert.assertEquals("failure - expected the city", expected.getCity(), actual.getCity());
+		Assert.assertEquals("failure - expected the country", expected.getCountry(), actual.getCountry());
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.teo.crud.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Tests of the OffHeapStore and of the OffHeapCaffeineCache, with the customers
+ * encoded by the java serialization.
+ */
+public class OffHeapCaffeineCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStoreWriteRead() throws Exception {
+
+		OffHeapStore store = new OffHeapStore(64 * 16, 16, null);
+		byte[] bytes = bytes(100);
+
+		OffHeapStore.Entry entry = store.write(bytes);
+
+		Assert.assertArrayEquals("failure - expected the bytes written", bytes, store.read(entry));
+		Assert.assertEquals("failure - expected 7 blocks of 16 bytes", 7 * 16, entry.getWeight());
+		Assert.assertEquals("failure - expected the blocks used", 7 * 16, store.getUsedBytes());
+
+	}
+
+	@Test
+	public void testStoreFullAndFree() throws Exception {
+
+		OffHeapStore store = new OffHeapStore(4 * 16, 16, null);
+		OffHeapStore.Entry first = store.write(bytes(32));
+		OffHeapStore.Entry second = store.write(bytes(32));
+
+		Assert.assertNull("failure - expected no block left", store.write(bytes(1)));
+
+		store.free(first);
+
+		Assert.assertNull("failure - expected no read of a freed entry", store.read(first));
+		Assert.assertEquals("failure - expected the blocks of the freed entry reused", 32,
+				store.read(store.write(bytes(32))).length);
+		Assert.assertArrayEquals("failure - expected the other entry unchanged", bytes(32), store.read(second));
+
+	}
+
+	@Test
+	public void testMemoryMappedStore() throws Exception {
+
+		OffHeapStore store = new OffHeapStore(64 * 16, 16, folder.getRoot());
+		byte[] bytes = bytes(100);
+
+		Assert.assertArrayEquals("failure - expected the bytes written", bytes, store.read(store.write(bytes)));
+		Assert.assertEquals("failure - expected the mapped file deleted", 0, folder.getRoot().list().length);
+
+	}
+
+	@Test
+	public void testPutGet() throws Exception {
+
+		OffHeapCaffeineCache cache = cache(1024 * 1024);
+		Customer customer = customer(1);
+
+		cache.put(1L, customer);
+		Customer cached = (Customer) cache.get(1L).get();
+
+		Assert.assertNotSame("failure - expected a decoded customer", customer, cached);
+		Assert.assertEquals("failure - expected the name", customer.getName(), cached.getName());
+		Assert.assertEquals("failure - expected the address", customer.getAddress().getStreetName(),
+				cached.getAddress().getStreetName());
+		Assert.assertTrue("failure - expected the customer off the heap", cache.getStore().getUsedBytes() > 0);
+
+	}
+
+	@Test
+	public void testReplacedEntryFreed() throws Exception {
+
+		OffHeapCaffeineCache cache = cache(1024 * 1024);
+
+		cache.put(1L, customer(1));
+		long used = cache.getStore().getUsedBytes();
+		cache.put(1L, customer(1));
+
+		Assert.assertEquals("failure - expected the replaced entry freed", used, cache.getStore().getUsedBytes());
+
+		cache.evict(1L);
+
+		Assert.assertEquals("failure - expected the evicted entry freed", 0, cache.getStore().getUsedBytes());
+
+	}
+
+	@Test
+	public void testBoundedByBytes() throws Exception {
+
+		OffHeapCaffeineCache cache = cache(64 * 1024);
+		for (long id = 1; id <= 1000; id++) {
+			cache.put(id, customer(id));
+		}
+		cache.getNativeCache().cleanUp();
+
+		Assert.assertTrue("failure - expected entries evicted", cache.getNativeCache().estimatedSize() < 1000);
+		Assert.assertTrue("failure - expected the store not full",
+				cache.getStore().getUsedBytes() < cache.getStore().getCapacity());
+		for (Object id : cache.getNativeCache().asMap().keySet()) {
+			Assert.assertEquals("failure - expected the customer of the id", id,
+					((Customer) cache.get(id).get()).getCustomerId());
+		}
+
+	}
+
+	@Test
+	public void testNullValueInMissingCache() throws Exception {
+
+		com.github.benmanes.caffeine.cache.Cache<Object, Object> missing = Caffeine.newBuilder().maximumSize(10).build();
+		OffHeapCaffeineCache cache = new OffHeapCaffeineCache("customers", Caffeine.newBuilder(),
+				new OffHeapStore(1024 * 1024, 64, null), new JavaSerializationCodec(), missing);
+
+		cache.put(1L, null);
+
+		Assert.assertNotNull("failure - expected the missing id cached", cache.get(1L));
+		Assert.assertNull("failure - expected a null value", cache.get(1L).get());
+		Assert.assertEquals("failure - expected nothing off the heap", 0, cache.getStore().getUsedBytes());
+
+	}
+
+	@Test
+	public void testPutIfAbsentKeepsCachedValues() throws Exception {
+
+		com.github.benmanes.caffeine.cache.Cache<Object, Object> missing = Caffeine.newBuilder().maximumSize(10).build();
+		OffHeapCaffeineCache cache = new OffHeapCaffeineCache("customers", Caffeine.newBuilder(),
+				new OffHeapStore(1024 * 1024, 64, null), new JavaSerializationCodec(), missing);
+		Customer updated = customer(1);
+		updated.setName("UPDATED");
+		cache.put(1L, updated);
+		cache.put(2L, null);
+
+		Assert.assertEquals("failure - expected the cached customer", "UPDATED",
+				((Customer) cache.putIfAbsent(1L, customer(1)).get()).getName());
+		Assert.assertNull("failure - expected the missing id", cache.putIfAbsent(2L, customer(2)).get());
+		Assert.assertNull("failure - expected an absent id", cache.putIfAbsent(3L, null));
+
+		Assert.assertEquals("failure - expected the customer not replaced", "UPDATED",
+				((Customer) cache.get(1L).get()).getName());
+		Assert.assertNull("failure - expected the missing id kept", cache.get(2L).get());
+		Assert.assertNull("failure - expected the absent id cached as missing", cache.get(3L).get());
+
+	}
+
+	private static OffHeapCaffeineCache cache(long capacity) throws Exception {
+		return new OffHeapCaffeineCache("customers", Caffeine.newBuilder(), new OffHeapStore(capacity, 64, null),
+				new JavaSerializationCodec(), null);
+	}
+
+	private static Customer customer(long id) {
+		Address address = new Address();
+		address.setAddressId(id);
+		address.setStreetName("Main Street");
+		address.setCity("Sydney");
+		Customer customer = new Customer();
+		customer.setCustomerId(id);
+		customer.setName("CUSTOMER" + id);
+		customer.setTelephoneNumber("0412345678");
+		customer.setAddress(address);
+		return customer;
+	}
+
+	private static byte[] bytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) i;
+		}
+		return bytes;
+	}
+
+}
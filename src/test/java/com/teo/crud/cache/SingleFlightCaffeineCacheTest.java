@@ -0,0 +1,97 @@
+package com.teo.crud.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Tests of the loads of the SingleFlightCaffeineCache racing with the writes of the cache.
+ * The loader is blocked by the test until the write is done.
+ */
+public class SingleFlightCaffeineCacheTest {
+
+	private final SingleFlightCaffeineCache cache = new SingleFlightCaffeineCache("customers",
+			Caffeine.newBuilder().maximumSize(100).build());
+
+	private final ExecutorService reader = Executors.newSingleThreadExecutor();
+
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		reader.shutdownNow();
+	}
+
+	@Test
+	public void testPutDuringLoadNotReplaced() throws Exception {
+
+		Future<String> read = startLoad("OLD");
+
+		cache.put(1L, "NEW");
+		release.countDown();
+
+		Assert.assertEquals("failure - expected the loaded value returned", "OLD", read.get(10, TimeUnit.SECONDS));
+		Assert.assertEquals("failure - expected the value of the put kept", "NEW", cache.get(1L).get());
+
+	}
+
+	@Test
+	public void testEvictDuringLoadNotCached() throws Exception {
+
+		Future<String> read = startLoad("OLD");
+
+		cache.evict(1L);
+		release.countDown();
+
+		read.get(10, TimeUnit.SECONDS);
+		Assert.assertNull("failure - expected the loaded value not cached", cache.get(1L));
+
+	}
+
+	@Test
+	public void testLoadCached() throws Exception {
+
+		Future<String> read = startLoad("OLD");
+
+		release.countDown();
+
+		read.get(10, TimeUnit.SECONDS);
+		Assert.assertEquals("failure - expected the loaded value cached", "OLD", cache.get(1L).get());
+
+	}
+
+	/**
+	 * Starts a miss of the key 1 on the reader thread, and waits for its loader to block.
+	 */
+	private Future<String> startLoad(final String value) throws InterruptedException {
+		final Callable<String> loader = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				started.countDown();
+				release.await();
+				return value;
+			}
+		};
+		Future<String> read = reader.submit(new Callable<String>() {
+			@Override
+			public String call() {
+				return cache.get(1L, loader);
+			}
+		});
+		Assert.assertTrue("failure - expected the load started", started.await(10, TimeUnit.SECONDS));
+		return read;
+	}
+
+}
@@ -0,0 +1,216 @@
+package com.teo.crud.cache;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import com.hazelcast.topic.MessageListener;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+
+/**
+ * Tests of the TwoLevelCache, with two nodes: each node has its own local cache,
+ * the nodes share the map and the invalidations topic of one embedded Hazelcast
+ * member, which stands for the cluster.
+ */
+public class TwoLevelCacheTest {
+
+	private static HazelcastInstance hazelcast;
+
+	private IMap<Object, Object> shared;
+
+	private TwoLevelCache node1;
+
+	private TwoLevelCache node2;
+
+	@BeforeClass
+	public static void startHazelcast() {
+		Config config = new HazelcastCacheConfiguration().hazelcastConfig("two-level-cache-test", 5801, "", 1000, 60);
+		config.getNetworkConfig().setPortAutoIncrement(true);
+		hazelcast = Hazelcast.newHazelcastInstance(config);
+	}
+
+	@AfterClass
+	public static void stopHazelcast() {
+		hazelcast.shutdown();
+	}
+
+	@Before
+	public void setUp() {
+		shared = hazelcast.getMap(HazelcastCacheConfiguration.MAP_PREFIX + "customers");
+		shared.clear();
+		ITopic<CacheInvalidation> invalidations = hazelcast.getTopic(HazelcastCacheConfiguration.INVALIDATIONS_TOPIC);
+		node1 = new TwoLevelCache(localCache(), shared, invalidations, "node1");
+		node2 = new TwoLevelCache(localCache(), shared, invalidations, "node2");
+	}
+
+	@After
+	public void tearDown() {
+		ITopic<CacheInvalidation> invalidations = hazelcast.getTopic(HazelcastCacheConfiguration.INVALIDATIONS_TOPIC);
+		invalidations.destroy();
+	}
+
+	@Test
+	public void testGetFromSharedMap() {
+
+		node1.put(1L, "MARIA");
+
+		Assert.assertEquals("failure - expected the value put by the other node", "MARIA", node2.get(1L).get());
+		Assert.assertNotNull("failure - expected the value kept in the local cache", localValue(node2, 1L));
+
+	}
+
+	@Test
+	public void testLoadedOnceForTheNodes() {
+
+		final int[] loads = new int[1];
+		Callable<String> loader = new Callable<String>() {
+			@Override
+			public String call() {
+				loads[0]++;
+				return "MARIA";
+			}
+		};
+
+		Assert.assertEquals("failure - expected the loaded value", "MARIA", node1.get(1L, loader));
+		Assert.assertEquals("failure - expected the value loaded by the other node", "MARIA", node2.get(1L, loader));
+		Assert.assertEquals("failure - expected one load", 1, loads[0]);
+
+	}
+
+	@Test
+	public void testEvictInvalidatesOtherNode() throws Exception {
+
+		node1.put(1L, "MARIA");
+		Assert.assertEquals("failure - expected the value on the other node", "MARIA", node2.get(1L).get());
+
+		node1.evict(1L);
+
+		awaitLocalEvict(node2, 1L);
+		Assert.assertNull("failure - expected the key evicted on both nodes", node2.get(1L));
+		Assert.assertNull("failure - expected the key evicted from the shared map", shared.get(1L));
+
+	}
+
+	@Test
+	public void testPutInvalidatesOtherNode() throws Exception {
+
+		node1.put(1L, "MARIA");
+		Assert.assertEquals("failure - expected the value on the other node", "MARIA", node2.get(1L).get());
+
+		node1.put(1L, "ANA");
+
+		awaitLocalEvict(node2, 1L);
+		Assert.assertEquals("failure - expected the new value on the other node", "ANA", node2.get(1L).get());
+
+	}
+
+	@Test
+	public void testPutIfAbsentNotPublished() throws Exception {
+
+		final List<Object> keys = new CopyOnWriteArrayList<Object>();
+		hazelcast.<CacheInvalidation>getTopic(HazelcastCacheConfiguration.INVALIDATIONS_TOPIC)
+				.addMessageListener(new MessageListener<CacheInvalidation>() {
+					@Override
+					public void onMessage(Message<CacheInvalidation> message) {
+						keys.add(message.getMessageObject().getKey());
+					}
+				});
+
+		Assert.assertNull("failure - expected no value", node1.putIfAbsent(1L, "MARIA"));
+		Assert.assertEquals("failure - expected the value kept", "MARIA", node1.putIfAbsent(1L, "ANA").get());
+		Assert.assertEquals("failure - expected the value in the shared map", "MARIA", shared.get(1L));
+
+		// the messages of a node are delivered in order, a message of the fills would come first
+		node1.evict(2L);
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!keys.contains(2L) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals("failure - expected the message of the evict only", Arrays.asList(2L), keys);
+
+	}
+
+	@Test
+	public void testClearInvalidatesOtherNode() throws Exception {
+
+		node2.put(2L, "ANA");
+		Assert.assertNotNull("failure - expected a local value", localValue(node2, 2L));
+
+		node1.clear();
+
+		awaitLocalEvict(node2, 2L);
+		Assert.assertNull("failure - expected the cache cleared on both nodes", node2.get(2L));
+
+	}
+
+	@Test
+	public void testNullValueNotShared() {
+
+		node1.put(3L, null);
+
+		Assert.assertNotNull("failure - expected the null value in the local cache", node1.get(3L));
+		Assert.assertNull("failure - expected no null value in the shared map", shared.get(3L));
+
+	}
+
+	@Test
+	public void testCustomerSharedWithCompactSerializer() {
+
+		Address address = new Address();
+		address.setAddressId(2L);
+		address.setCity("AUCKLAND");
+		Customer customer = new Customer();
+		customer.setCustomerId(1L);
+		customer.setName("MARIA");
+		customer.setAddress(address);
+
+		node1.put(1L, customer);
+		Customer decoded = (Customer) node2.get(1L).get();
+
+		Assert.assertNotSame("failure - expected a customer decoded from the shared map", customer, decoded);
+		Assert.assertEquals("failure - expected the name", "MARIA", decoded.getName());
+		Assert.assertEquals("failure - expected the address", "AUCKLAND", decoded.getAddress().getCity());
+
+	}
+
+	private static Cache localCache() {
+		return new SingleFlightCaffeineCache("customers", Caffeine.newBuilder().maximumSize(100).build());
+	}
+
+	private static ValueWrapper localValue(TwoLevelCache cache, Object key) {
+		@SuppressWarnings("unchecked")
+		com.github.benmanes.caffeine.cache.Cache<Object, Object> local = 
+				(com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+		return local.getIfPresent(key) != null ? cache.get(key) : null;
+	}
+
+	/**
+	 * Waits for the invalidation message, the topic delivers it asynchronously.
+	 */
+	private static void awaitLocalEvict(TwoLevelCache cache, Object key) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (localValue(cache, key) != null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertNull("failure - expected the local value evicted by the message", localValue(cache, key));
+	}
+
+}
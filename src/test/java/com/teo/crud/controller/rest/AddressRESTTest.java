@@ -5,7 +5,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -30,7 +30,7 @@ import com.teo.crud.util.JsonMappingUtil;
  * 
  */
 @RunWith(SpringJUnit4ClassRunner.class)
-@SpringApplicationConfiguration(classes = Application.class)
+@SpringBootTest(classes = Application.class)
 @WebAppConfiguration
 @Transactional
 public class AddressRESTTest{
@@ -64,11 +64,54 @@ public class AddressRESTTest{
 
 	}
 
+	@Test
+	public void testGetAddressesByIds() throws Exception {
+
+		String uri = "/address?ids=2,99,1";
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(uri).accept(MediaType.APPLICATION_JSON)).andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status", 200, status);
+		Address[] addresses = JsonMappingUtil.mapFromJson(content, Address[].class);
+		Assert.assertEquals("Expected the existing addresses", 2, addresses.length);
+		Assert.assertEquals("Expected the order of the ids", Long.valueOf(2), addresses[0].getAddressId());
+		Assert.assertEquals("Expected the order of the ids", Long.valueOf(1), addresses[1].getAddressId());
+
+	}
+
+	@Test
+	public void testExportAddresses() throws Exception {
+
+		String uri = "/address/export";
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(uri).accept(AddressREST.APPLICATION_NDJSON_VALUE))
+				.andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status", 200, status);
+		Assert.assertEquals("Expected ndjson content type", AddressREST.APPLICATION_NDJSON_VALUE,
+				result.getResponse().getContentType());
+
+		String[] lines = content.split("\n");
+
+		Assert.assertEquals("Expected one line per address", 5, lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			Address address = JsonMappingUtil.mapFromJson(lines[i], Address.class);
+			Assert.assertEquals("Expected addresses ordered by id", Long.valueOf(i + 1), address.getAddressId());
+		}
+
+	}
+
 	@Test
 	public void testGetAddress() throws Exception {
 
 		String uri = "/address/{id}";
-		Long id = new Long(1);
+		Long id = Long.valueOf(1);
 
 		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(uri, id).accept(MediaType.APPLICATION_JSON))
 				.andReturn();
@@ -81,6 +124,47 @@ public class AddressRESTTest{
 
 	}
 
+	@Test
+	public void testGetAddressNotModified() throws Exception {
+
+		String uri = "/address/{id}";
+		Long id = Long.valueOf(1);
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(uri, id).accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+		String eTag = result.getResponse().getHeader("ETag");
+
+		Assert.assertEquals("Expected ETag of the version", "\"0\"", eTag);
+
+		MvcResult notModified = mvc.perform(MockMvcRequestBuilders.get(uri, id)
+				.header("If-None-Match", "\"3\", W/" + eTag).accept(MediaType.APPLICATION_JSON)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 304", 304, notModified.getResponse().getStatus());
+		Assert.assertEquals("Expected HTTP response body to be empty", 0,
+				notModified.getResponse().getContentAsByteArray().length);
+
+	}
+
+	@Test
+	public void testUpdateAddressIfMatch() throws Exception {
+
+		Address address = JsonMappingUtil.mapFromJson(
+				JsonMappingUtil.mapToJson(addressService.read(Long.valueOf(1))), Address.class);
+		address.setStreetName("Seinfeld");
+		String inputJson = JsonMappingUtil.mapToJson(address);
+
+		MvcResult failed = mvc.perform(MockMvcRequestBuilders.put("/address").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "\"1\"").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 412", 412, failed.getResponse().getStatus());
+
+		MvcResult updated = mvc.perform(MockMvcRequestBuilders.put("/address").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "\"0\"").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, updated.getResponse().getStatus());
+
+	}
+
 	@Test
 	public void testGetAddressNotFound() throws Exception {
 
@@ -132,8 +216,10 @@ public class AddressRESTTest{
 	public void testUpdateAddress() throws Exception {
 
 		String uri = "/address";
-		Long id = new Long(1);
-		Address address = addressService.read(id);
+		Long id = Long.valueOf(1);
+		// a copy, the managed address would be flushed with a new version before the PUT
+		Address address = JsonMappingUtil.mapFromJson(
+				JsonMappingUtil.mapToJson(addressService.read(id)), Address.class);
 		String updatedText = address.getStreetName() + " test";
 		address.setStreetName(updatedText);
 		String inputJson = JsonMappingUtil.mapToJson(address);
@@ -159,7 +245,7 @@ public class AddressRESTTest{
 	public void testDeleteAddress() throws Exception {
 
 		String uri = "/address/{id}";
-		Long id = new Long(1);
+		Long id = Long.valueOf(1);
 
 		MvcResult result = mvc.perform(MockMvcRequestBuilders.delete(uri, id).contentType(MediaType.APPLICATION_JSON))
 				.andReturn();
@@ -0,0 +1,185 @@
+package com.teo.crud.controller.rest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.teo.crud.Application;
+import com.teo.crud.async.BoundedExecutor;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.util.JsonMappingUtil;
+
+/**
+ * AsyncCustomerREST and AsyncAddressREST controller unit tests
+ * We are using Spring MVC Mocks to simulate HTTP requests
+ * 
+ * The async requests run on the threads of the BoundedExecutor, 
+ * out of the transaction of the test, so they only read the sample data
+ * or fail without changing it.
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class)
+@WebAppConfiguration
+@Transactional
+public class AsyncRESTTest {
+
+    protected MockMvc mvc;
+
+    @Autowired
+    protected WebApplicationContext webApplicationContext;
+
+	@Before
+	public void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+	}
+
+	@Test
+	public void testGetCustomerAsync() throws Exception {
+
+		Long id = Long.valueOf(1);
+
+		MvcResult result = perform(MockMvcRequestBuilders.get("/async/customer/{id}", id).accept(MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals("Expected HTTP status 200", 200, result.getResponse().getStatus());
+		Customer customer = JsonMappingUtil.mapFromJson(result.getResponse().getContentAsString(), Customer.class);
+		Assert.assertEquals("Expected customer.id match", id, customer.getCustomerId());
+		Assert.assertNotNull("Expected an ETag", result.getResponse().getHeader("ETag"));
+
+	}
+
+	@Test
+	public void testGetCustomerAsyncNotFound() throws Exception {
+
+		MvcResult result = perform(MockMvcRequestBuilders.get("/async/customer/{id}", Long.MAX_VALUE).accept(MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals("Expected HTTP status 404", 404, result.getResponse().getStatus());
+
+	}
+
+	@Test
+	public void testUpdateCustomerAsyncConflict() throws Exception {
+
+		String json = "{\"customerId\":1,\"version\":-1,\"name\":\"STALE\",\"telephoneNumber\":\"123\"}";
+
+		MvcResult result = perform(MockMvcRequestBuilders.put("/async/customer")
+				.contentType(MediaType.APPLICATION_JSON).content(json));
+
+		Assert.assertEquals("Expected HTTP status 409", 409, result.getResponse().getStatus());
+
+	}
+
+	@Test
+	public void testGetAddressAsync() throws Exception {
+
+		Long id = Long.valueOf(1);
+
+		MvcResult result = perform(MockMvcRequestBuilders.get("/async/address/{id}", id).accept(MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals("Expected HTTP status 200", 200, result.getResponse().getStatus());
+		Address address = JsonMappingUtil.mapFromJson(result.getResponse().getContentAsString(), Address.class);
+		Assert.assertEquals("Expected address.id match", id, address.getAddressId());
+
+	}
+
+	@Test
+	public void testGetAddressesAsync() throws Exception {
+
+		MvcResult result = perform(MockMvcRequestBuilders.get("/async/address").accept(MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals("Expected HTTP status 200", 200, result.getResponse().getStatus());
+		Address[] addresses = JsonMappingUtil.mapFromJson(result.getResponse().getContentAsString(), Address[].class);
+		Assert.assertTrue("Expected addresses", addresses.length > 0);
+
+	}
+
+	@Test
+	public void testExecutorSaturated() throws Exception {
+
+		BoundedExecutor executor = new BoundedExecutor(1, 1, 10000, false);
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<ResponseEntity<String>> blocked = new Callable<ResponseEntity<String>>() {
+			@Override
+			public ResponseEntity<String> call() throws Exception {
+				release.await();
+				return new ResponseEntity<String>(HttpStatus.OK);
+			}
+		};
+		try {
+			DeferredResult<ResponseEntity<String>> running = executor.submit(blocked);
+			DeferredResult<ResponseEntity<String>> queued = executor.submit(blocked);
+			DeferredResult<ResponseEntity<String>> rejected = executor.submit(blocked);
+
+			Assert.assertFalse("Expected the running request not answered", running.hasResult());
+			Assert.assertFalse("Expected the queued request not answered", queued.hasResult());
+			Assert.assertTrue("Expected the third request answered at once", rejected.hasResult());
+			Assert.assertEquals("Expected HTTP status 503", HttpStatus.SERVICE_UNAVAILABLE,
+					((ResponseEntity<?>) rejected.getResult()).getStatusCode());
+			Assert.assertEquals("Expected a Retry-After header", "1",
+					((ResponseEntity<?>) rejected.getResult()).getHeaders().getFirst("Retry-After"));
+			Assert.assertEquals("Expected one rejected request", 1, executor.getRejectedCount());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+
+	}
+
+	@Test
+	public void testExecutorVirtualThreads() throws Exception {
+
+		BoundedExecutor executor = new BoundedExecutor(1, 1, 10000, true);
+		try {
+			DeferredResult<ResponseEntity<Boolean>> result = executor.submit(new Callable<ResponseEntity<Boolean>>() {
+				@Override
+				public ResponseEntity<Boolean> call() throws Exception {
+					return new ResponseEntity<Boolean>(Thread.currentThread().isVirtual(), HttpStatus.OK);
+				}
+			});
+
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (!result.hasResult() && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+			Assert.assertEquals("Expected the request run on a virtual thread", Boolean.TRUE,
+					((ResponseEntity<?>) result.getResult()).getBody());
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+	/**
+	 * Sends the request, waits for the async result and dispatches it.
+	 */
+	private MvcResult perform(org.springframework.test.web.servlet.RequestBuilder request) throws Exception {
+
+		MvcResult started = mvc.perform(request).andReturn();
+
+		Assert.assertTrue("Expected an async request", started.getRequest().isAsyncStarted());
+		started.getAsyncResult();
+
+		return mvc.perform(MockMvcRequestBuilders.asyncDispatch(started)).andReturn();
+	}
+
+}
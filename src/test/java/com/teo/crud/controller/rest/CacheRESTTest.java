@@ -0,0 +1,96 @@
+package com.teo.crud.controller.rest;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teo.crud.Application;
+import com.teo.crud.data.service.AddressService;
+
+/**
+ * CacheREST controller unit tests
+ * We are using Spring MVC Mocks to simulate HTTP requests
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class)
+@WebAppConfiguration
+@Transactional
+public class CacheRESTTest {
+
+    protected MockMvc mvc;
+
+    @Autowired
+    protected WebApplicationContext webApplicationContext;
+
+    @Autowired
+	private AddressService addressService;
+
+	@Before
+	public void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+		addressService.evictCache();
+	}
+
+	@Test
+	public void testGetCacheStats() throws Exception {
+
+		Map<String, Map<String, Object>> stats = getCacheStats();
+
+		for (String name : Application.CACHE_NAMES) {
+			Assert.assertTrue("Expected statistics of cache " + name, stats.containsKey(name));
+			Assert.assertTrue("Expected hitCount of cache " + name, stats.get(name).containsKey("hitCount"));
+			Assert.assertTrue("Expected missCount of cache " + name, stats.get(name).containsKey("missCount"));
+			Assert.assertTrue("Expected evictionCount of cache " + name, stats.get(name).containsKey("evictionCount"));
+		}
+
+	}
+
+	@Test
+	public void testGetCacheStatsCountsHitsAndMisses() throws Exception {
+
+		Map<String, Object> before = getCacheStats().get("addresses");
+
+		addressService.read(Long.valueOf(1));
+		addressService.read(Long.valueOf(1));
+
+		Map<String, Object> after = getCacheStats().get("addresses");
+
+		Assert.assertEquals("failure - expected one more miss", count(before, "missCount") + 1, count(after, "missCount"));
+		Assert.assertEquals("failure - expected one more hit", count(before, "hitCount") + 1, count(after, "hitCount"));
+		Assert.assertEquals("failure - expected one cached address", 1, count(after, "size"));
+
+	}
+
+	private Map<String, Map<String, Object>> getCacheStats() throws Exception {
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/cache/stats").accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, result.getResponse().getStatus());
+
+		return new ObjectMapper().readValue(result.getResponse().getContentAsString(),
+				new TypeReference<Map<String, Map<String, Object>>>() { });
+	}
+
+	private static long count(Map<String, Object> stats, String name) {
+		return ((Number) stats.get(name)).longValue();
+	}
+
+}
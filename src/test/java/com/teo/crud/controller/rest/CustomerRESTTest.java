@@ -1,11 +1,16 @@
 package com.teo.crud.controller.rest;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -32,7 +37,7 @@ import com.teo.crud.util.JsonMappingUtil;
  * 
  */
 @RunWith(SpringJUnit4ClassRunner.class)
-@SpringApplicationConfiguration(classes = Application.class)
+@SpringBootTest(classes = Application.class)
 @WebAppConfiguration
 @Transactional
 public class CustomerRESTTest {
@@ -45,6 +50,10 @@ public class CustomerRESTTest {
 	private CustomerService customerService;
 	@Autowired
 	private AddressService addressService;
+	@Autowired
+	private CacheManager cacheManager;
+	@PersistenceContext
+	private EntityManager entityManager;
 
 	@Before
 	public void setUp() {
@@ -70,13 +79,100 @@ public class CustomerRESTTest {
 		Assert.assertEquals("Expected HTTP status", 200, status);
 		Assert.assertTrue("Expected HTTP response body to have a value", content.trim().length() > 0);
 
+		Customer[] customers = JsonMappingUtil.mapFromJson(content, Customer[].class);
+
+		Assert.assertEquals("Expected all customers", 4, customers.length);
+
+	}
+
+	@Test
+	public void testGetCustomersPage() throws Exception {
+
+		String uri = "/customer";
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get(uri)
+				.param("afterId", "1")
+				.param("limit", "2")
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status", 200, status);
+
+		Customer[] customers = JsonMappingUtil.mapFromJson(content, Customer[].class);
+
+		Assert.assertEquals("Expected page size", 2, customers.length);
+		Assert.assertEquals("Expected first customer after id 1", Long.valueOf(2), customers[0].getCustomerId());
+		Assert.assertEquals("Expected second customer after id 1", Long.valueOf(3), customers[1].getCustomerId());
+
+	}
+
+	@Test
+	public void testGetCustomersPageInvalidLimit() throws Exception {
+
+		String uri = "/customer";
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get(uri)
+				.param("limit", "0")
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status 400", 400, status);
+
+	}
+
+	@Test
+	public void testGetCustomersByIds() throws Exception {
+
+		String uri = "/customer";
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get(uri)
+				.param("ids", "3,99,1")
+				.param("expand", "address")
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, status);
+		Customer[] customers = JsonMappingUtil.mapFromJson(content, Customer[].class);
+		Assert.assertEquals("Expected the existing customers", 2, customers.length);
+		Assert.assertEquals("Expected the order of the ids", Long.valueOf(3), customers[0].getCustomerId());
+		Assert.assertEquals("Expected the order of the ids", Long.valueOf(1), customers[1].getCustomerId());
+		Assert.assertNotNull("Expected the address with expand", customers[0].getAddress());
+
+	}
+
+	@Test
+	public void testGetCustomersByIdsEmpty() throws Exception {
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get("/customer")
+				.param("ids", "")
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		Assert.assertEquals("Expected HTTP status 400", 400, result.getResponse().getStatus());
+
 	}
 
 	@Test
 	public void testGetCustomer() throws Exception {
 
 		String uri = "/customer/{id}";
-		Long id = new Long(1);
+		Long id = Long.valueOf(1);
 
 		MvcResult result = mvc.perform(
 				MockMvcRequestBuilders
@@ -90,6 +186,262 @@ public class CustomerRESTTest {
 		Assert.assertEquals("Expected HTTP status 200", 200, status);
 		Assert.assertTrue("Expected HTTP response body to have a value", content.trim().length() > 0);
 
+		Customer customer = JsonMappingUtil.mapFromJson(content, Customer.class);
+
+		Assert.assertEquals("Expected customer.id match", id, customer.getCustomerId());
+		Assert.assertFalse("Expected no address without expand", content.contains("\"address\""));
+
+	}
+
+	@Test
+	public void testGetCustomerCachedJson() throws Exception {
+
+		String uri = "/customer/{id}";
+		Long id = Long.valueOf(1);
+
+		MvcResult first = mvc.perform(MockMvcRequestBuilders.get(uri, id).accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+		MvcResult second = mvc.perform(MockMvcRequestBuilders.get(uri, id).accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		String eTag = first.getResponse().getHeader("ETag");
+
+		Assert.assertNotNull("Expected ETag header", eTag);
+		Assert.assertEquals("Expected same ETag", eTag, second.getResponse().getHeader("ETag"));
+		Assert.assertEquals("Expected same content", first.getResponse().getContentAsString(),
+				second.getResponse().getContentAsString());
+		Assert.assertNotNull("Expected cached json", cacheManager.getCache(CustomerREST.JSON_CACHE).get(id));
+
+		Customer customer = JsonMappingUtil.mapFromJson(first.getResponse().getContentAsString(), Customer.class);
+		customer.setName("Kramer");
+		customer.setAddress(addressService.read(Long.valueOf(1)));
+		customerService.update(customer);
+		// the version is incremented when the update is flushed
+		entityManager.flush();
+
+		Assert.assertNull("Expected cached json evicted by update", cacheManager.getCache(CustomerREST.JSON_CACHE).get(id));
+
+		MvcResult updated = mvc.perform(MockMvcRequestBuilders.get(uri, id).accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		Assert.assertNotEquals("Expected new ETag after update", eTag, updated.getResponse().getHeader("ETag"));
+		Assert.assertEquals("Expected updated name", "Kramer",
+				JsonMappingUtil.mapFromJson(updated.getResponse().getContentAsString(), Customer.class).getName());
+
+	}
+
+	@Test
+	public void testGetCustomerNotModified() throws Exception {
+
+		String uri = "/customer/{id}";
+		Long id = Long.valueOf(1);
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(uri, id).accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+		String eTag = result.getResponse().getHeader("ETag");
+
+		Assert.assertEquals("Expected ETag of the version", "\"0\"", eTag);
+
+		MvcResult notModified = mvc.perform(MockMvcRequestBuilders.get(uri, id)
+				.header("If-None-Match", eTag).accept(MediaType.APPLICATION_JSON)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 304", 304, notModified.getResponse().getStatus());
+		Assert.assertEquals("Expected HTTP response body to be empty", 0,
+				notModified.getResponse().getContentAsByteArray().length);
+		Assert.assertEquals("Expected same ETag", eTag, notModified.getResponse().getHeader("ETag"));
+
+		MvcResult expanded = mvc.perform(MockMvcRequestBuilders.get(uri, id).param("expand", "address")
+				.header("If-None-Match", eTag).accept(MediaType.APPLICATION_JSON)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200 for another representation", 200,
+				expanded.getResponse().getStatus());
+		Assert.assertEquals("Expected ETag with the address version", "\"0-1.0\"",
+				expanded.getResponse().getHeader("ETag"));
+
+	}
+
+	@Test
+	public void testGetCustomerAddressUpdated() throws Exception {
+
+		String uri = "/customer/{id}";
+		Long id = Long.valueOf(1);
+
+		MvcResult expanded = mvc.perform(MockMvcRequestBuilders.get(uri, id).param("expand", "address")
+				.accept(MediaType.APPLICATION_JSON)).andReturn();
+		String eTag = expanded.getResponse().getHeader("ETag");
+		// the cached customer keeps its own copy of the address, as after the request
+		entityManager.clear();
+
+		Address address = addressService.read(Long.valueOf(1));
+		address.setStreetName("UPDATED STREET");
+		addressService.update(address);
+
+		MvcResult updated = mvc.perform(MockMvcRequestBuilders.get(uri, id).param("expand", "address")
+				.header("If-None-Match", eTag).accept(MediaType.APPLICATION_JSON)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200 after the address update", 200,
+				updated.getResponse().getStatus());
+		Assert.assertEquals("Expected ETag with the new address version", "\"0-1.1\"",
+				updated.getResponse().getHeader("ETag"));
+		Assert.assertTrue("Expected the updated address",
+				updated.getResponse().getContentAsString().contains("UPDATED STREET"));
+
+	}
+
+	@Test
+	public void testAddressUpdateEvictsItsCustomersOnly() throws Exception {
+
+		customerService.read(Long.valueOf(2));
+		customerService.read(Long.valueOf(3));
+		customerService.read(Long.valueOf(4));
+		entityManager.clear();
+
+		Address address = addressService.read(Long.valueOf(2));
+		address.setStreetName("UPDATED STREET");
+		addressService.update(address);
+
+		Cache customers = cacheManager.getCache("customers");
+		Assert.assertNull("Expected the customer of the address evicted", customers.get(Long.valueOf(2)));
+		Assert.assertNull("Expected the other customer of the address evicted", customers.get(Long.valueOf(3)));
+		Assert.assertNotNull("Expected the customer of another address kept", customers.get(Long.valueOf(4)));
+
+	}
+
+	@Test
+	public void testUpdateCustomerIfMatch() throws Exception {
+
+		Customer customer = customerService.read(Long.valueOf(1));
+		String inputJson = JsonMappingUtil.mapToJson(customer);
+
+		MvcResult failed = mvc.perform(MockMvcRequestBuilders.put("/customer").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "\"7\"").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 412", 412, failed.getResponse().getStatus());
+
+		MvcResult updated = mvc.perform(MockMvcRequestBuilders.put("/customer").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "\"0-1.0\"").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, updated.getResponse().getStatus());
+
+	}
+
+	@Test
+	public void testUpdateCustomerIfMatchStaleCache() throws Exception {
+
+		Assert.assertEquals("Expected the cached version", Long.valueOf(0), customerService.read(Long.valueOf(1)).getVersion());
+		// another node updates the customer, the cache of this node still has version 0
+		entityManager.createQuery("UPDATE Customer c SET c.version = c.version + 1 WHERE c.customerId = 1")
+				.executeUpdate();
+		Customer customer = new Customer();
+		customer.setCustomerId(Long.valueOf(1));
+		customer.setName("STALE");
+		String inputJson = JsonMappingUtil.mapToJson(customer);
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.put("/customer").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "\"0\"").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 412", 412, result.getResponse().getStatus());
+
+	}
+
+	@Test
+	public void testUpdateCustomerIfMatchNotFound() throws Exception {
+
+		Customer customer = new Customer();
+		customer.setCustomerId(Long.MAX_VALUE);
+		customer.setName("MISSING");
+		String inputJson = JsonMappingUtil.mapToJson(customer);
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.put("/customer").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "*").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 412", 412, result.getResponse().getStatus());
+
+	}
+
+	@Test
+	public void testUpdateCustomerIfMatchAnyStaleVersion() throws Exception {
+
+		Customer customer = JsonMappingUtil.mapFromJson(
+				JsonMappingUtil.mapToJson(customerService.read(Long.valueOf(1))), Customer.class);
+		customer.setVersion(customer.getVersion() + 5);
+		customer.setName("ANY VERSION");
+		String inputJson = JsonMappingUtil.mapToJson(customer);
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.put("/customer").contentType(MediaType.APPLICATION_JSON)
+				.header("If-Match", "*").accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, result.getResponse().getStatus());
+		Assert.assertEquals("Expected the current version updated", Long.valueOf(1),
+				JsonMappingUtil.mapFromJson(result.getResponse().getContentAsString(), Customer.class).getVersion());
+
+	}
+
+	@Test
+	public void testUpdateCustomerConflict() throws Exception {
+
+		Customer customer = JsonMappingUtil.mapFromJson(
+				JsonMappingUtil.mapToJson(customerService.read(Long.valueOf(1))), Customer.class);
+		customer.setVersion(customer.getVersion() + 5);
+		String inputJson = JsonMappingUtil.mapToJson(customer);
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.put("/customer").contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON).content(inputJson)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 409", 409, result.getResponse().getStatus());
+
+	}
+
+	@Test
+	public void testGetCustomerExpandAddress() throws Exception {
+
+		String uri = "/customer/{id}";
+		Long id = Long.valueOf(1);
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get(uri, id)
+				.param("expand", "address")
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, status);
+
+		Customer customer = JsonMappingUtil.mapFromJson(content, Customer.class);
+
+		Assert.assertNotNull("Expected customer.address not null", customer.getAddress());
+		Assert.assertEquals("Expected customer.address.id match", Long.valueOf(1), customer.getAddress().getAddressId());
+		Assert.assertEquals("Expected customer.address.streetName match", "BIG STREET",
+				customer.getAddress().getStreetName());
+
+	}
+
+	@Test
+	public void testGetCustomersExpandAddress() throws Exception {
+
+		String uri = "/customer";
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get(uri)
+				.param("expand", "address")
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status", 200, status);
+
+		Customer[] customers = JsonMappingUtil.mapFromJson(content, Customer[].class);
+
+		Assert.assertEquals("Expected all customers", 4, customers.length);
+		Assert.assertEquals("Expected customer.address.id match", Long.valueOf(2),
+				customers[2].getAddress().getAddressId());
+
 	}
 
 	@Test
@@ -147,12 +499,48 @@ public class CustomerRESTTest {
 
 	}
 
+	@Test
+	public void testCreateCustomers() throws Exception {
+
+		String uri = "/customer/batch";
+		Customer first = new Customer();
+		first.setName("Billai");
+		first.setAddress(addressService.read(1L));
+		Customer second = new Customer();
+		second.setName("Jerry");
+
+		String inputJson = JsonMappingUtil.mapToJson(new Customer[] { first, second });
+
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.post(uri).contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.content(inputJson))
+				.andReturn();
+
+		String content = result.getResponse().getContentAsString();
+		int status = result.getResponse().getStatus();
+
+		Assert.assertEquals("Expected HTTP status 201", 201, status);
+
+		Long[] createdIds = JsonMappingUtil.mapFromJson(content, Long[].class);
+
+		Assert.assertEquals("Expected one id per customer", 2, createdIds.length);
+		Customer createdCustomer = customerService.read(createdIds[0]);
+		Assert.assertEquals("Expected customer.name match", "Billai", createdCustomer.getName());
+		Assert.assertEquals("Expected customer.address match", Long.valueOf(1),
+				createdCustomer.getAddress().getAddressId());
+
+	}
+
 	@Test
 	public void testUpdateCustomer() throws Exception {
 
 		String uri = "/customer";
-		Long id = new Long(1);
-		Customer customer = customerService.read(id);
+		Long id = Long.valueOf(1);
+		// a copy, the managed customer would be flushed with a new version before the PUT
+		Customer customer = JsonMappingUtil.mapFromJson(
+				JsonMappingUtil.mapToJson(customerService.read(id)), Customer.class);
 		String updatedText = customer.getName() + " Seinfeld";
 		customer.setName(updatedText);
 		String inputJson = JsonMappingUtil.mapToJson(customer);
@@ -183,8 +571,8 @@ public class CustomerRESTTest {
 	public void testUpdateCustomerAddress() throws Exception {
 
 		String uri = "/customer/{customerId}/address/{addressId}";
-		Long customerId = new Long(1);
-		Long updatedAddressId = new Long(2);
+		Long customerId = Long.valueOf(1);
+		Long updatedAddressId = Long.valueOf(2);
 		Customer customer = customerService.read(customerId);
 
 		String inputJson = JsonMappingUtil.mapToJson(customer);
@@ -218,7 +606,7 @@ public class CustomerRESTTest {
 	public void testDeleteCustomer() throws Exception {
 
 		String uri = "/customer/{id}";
-		Long id = new Long(1);
+		Long id = Long.valueOf(1);
 
 		MvcResult result = mvc.perform(
 				MockMvcRequestBuilders
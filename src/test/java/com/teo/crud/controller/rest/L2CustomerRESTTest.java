@@ -0,0 +1,87 @@
+package com.teo.crud.controller.rest;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.teo.crud.Application;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * Tests of CustomerREST with the caches shared by the nodes (cache.l2): the customers
+ * read from the shared map are decoded by the CompactEntityCodec.
+ * The node is alone in its cluster.
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class, properties = { "cache.l2.enabled=true", "cache.l2.port=5821",
+		"cache.l2.cluster-name=l2-customer-rest-test" })
+@WebAppConfiguration
+@Transactional
+public class L2CustomerRESTTest {
+
+	protected MockMvc mvc;
+
+	@Autowired
+	protected WebApplicationContext webApplicationContext;
+
+	@Autowired
+	private CustomerService customerService;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Before
+	public void setUp() {
+		mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+		customerService.evictCache();
+	}
+
+	@Test
+	public void testGetCustomerWithAddressFromSharedMap() throws Exception {
+
+		// a managed customer is put in the cache with the lazy proxy of its address
+		Customer customer = entityManager.find(Customer.class, Long.valueOf(1));
+		customer.setName("UPDATED NAME");
+		customerService.update(customer);
+		localCustomers().invalidateAll();
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", Long.valueOf(1))
+				.param("expand", "address").accept(MediaType.APPLICATION_JSON)).andReturn();
+
+		Assert.assertEquals("Expected HTTP status", 200, result.getResponse().getStatus());
+		Assert.assertEquals("Expected the ETag with the address version", "\"1-1.0\"",
+				result.getResponse().getHeader("ETag"));
+		String content = result.getResponse().getContentAsString();
+		Assert.assertTrue("Expected the customer of the shared map", content.contains("UPDATED NAME"));
+		Assert.assertTrue("Expected the address fields", content.contains("BIG STREET"));
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private Cache<Object, Object> localCustomers() {
+		return (Cache<Object, Object>) cacheManager.getCache("customers").getNativeCache();
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.teo.crud.controller.rest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.teo.crud.Application;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * MetricsREST controller unit tests
+ * We are using Spring MVC Mocks to simulate HTTP requests
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class)
+@WebAppConfiguration
+@Transactional
+public class MetricsRESTTest {
+
+    protected MockMvc mvc;
+
+    @Autowired
+    protected WebApplicationContext webApplicationContext;
+
+    @Autowired
+	private CustomerService customerService;
+
+	@Before
+	public void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+		customerService.evictCache();
+	}
+
+	@Test
+	public void testGetMetrics() throws Exception {
+
+		mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", 1).accept(MediaType.APPLICATION_JSON));
+		mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", 1).accept(MediaType.APPLICATION_JSON));
+
+		String metrics = getMetrics();
+
+		Assert.assertTrue("Expected the count of the customer reads",
+				metrics.contains("http_server_requests_seconds_count{handler=\"CustomerREST.getCustomer\"}"));
+		Assert.assertTrue("Expected the p99 of the customer reads",
+				metrics.contains("http_server_requests_seconds{handler=\"CustomerREST.getCustomer\",quantile=\"0.99\"}"));
+		Assert.assertTrue("Expected the errors of the customer reads",
+				metrics.contains("http_server_requests_errors_total{handler=\"CustomerREST.getCustomer\"} 0"));
+		Assert.assertTrue("Expected the count of the customer queries",
+				metrics.contains("repository_query_seconds_count{query=\"CustomerRepository.findOneWithAddress\"}"));
+		Assert.assertTrue("Expected the hits of the customers cache",
+				metrics.contains("cache_requests_total{cache=\"customers\",result=\"hit\"}"));
+		Assert.assertTrue("Expected the active connections of the pool",
+				metrics.contains("datasource_connections{state=\"active\"}"));
+		Assert.assertTrue("Expected the maximum connections of the pool",
+				metrics.contains("datasource_connections{state=\"max\"} 20"));
+		Assert.assertTrue("Expected the count of the waits for a connection",
+				metrics.contains("datasource_connection_wait_seconds_count "));
+		Assert.assertTrue("Expected the size of the logging queue",
+				metrics.contains("log_queue_events{state=\"max\"} 1024"));
+
+	}
+
+	@Test
+	public void testGetMetricsCountsRequests() throws Exception {
+
+		long before = count(getMetrics(), "http_server_requests_seconds_count{handler=\"CustomerREST.getCustomer\"}");
+
+		mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", 1).accept(MediaType.APPLICATION_JSON));
+		mvc.perform(MockMvcRequestBuilders.get("/customer/{id}", 1).accept(MediaType.APPLICATION_JSON));
+
+		long after = count(getMetrics(), "http_server_requests_seconds_count{handler=\"CustomerREST.getCustomer\"}");
+
+		Assert.assertEquals("failure - expected 2 more customer reads", before + 2, after);
+
+	}
+
+	private String getMetrics() throws Exception {
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/metrics")).andReturn();
+
+		Assert.assertEquals("Expected HTTP status 200", 200, result.getResponse().getStatus());
+		Assert.assertTrue("Expected the Prometheus text format",
+				result.getResponse().getContentType().startsWith("text/plain"));
+
+		return result.getResponse().getContentAsString();
+	}
+
+	/**
+	 * @return the value of the sample, 0 if there is no such sample
+	 */
+	private static long count(String metrics, String sample) {
+		for (String line : metrics.split("\n")) {
+			if (line.startsWith(sample + " ")) {
+				return Long.parseLong(line.substring(sample.length() + 1));
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.teo.crud.controller.rest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.teo.crud.Application;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * Tests of CustomerREST with the customers cache off the heap: each read of the
+ * cache decodes a new customer, the cached json bytes are still used.
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class, properties = { "cache.offheap.names=customers" })
+@WebAppConfiguration
+@Transactional
+public class OffHeapCustomerRESTTest {
+
+	protected MockMvc mvc;
+
+	@Autowired
+	protected WebApplicationContext webApplicationContext;
+
+	@Autowired
+	private CustomerService customerService;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Before
+	public void setUp() {
+		mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+		customerService.evictCache();
+		cacheManager.getCache(CustomerREST.JSON_CACHE).clear();
+	}
+
+	@Test
+	public void testGetCustomerJsonCached() throws Exception {
+
+		String first = getCustomer(1);
+		long hits = jsonCache().stats().hitCount();
+		String second = getCustomer(1);
+
+		Assert.assertEquals("Expected the same json", first, second);
+		Assert.assertEquals("Expected the cached json bytes used", hits + 1, jsonCache().stats().hitCount());
+
+	}
+
+	private String getCustomer(long id) throws Exception {
+		MvcResult result = mvc.perform(
+				MockMvcRequestBuilders
+				.get("/customer/{id}", id)
+				.accept(MediaType.APPLICATION_JSON))
+				.andReturn();
+		Assert.assertEquals("Expected HTTP status", 200, result.getResponse().getStatus());
+		return result.getResponse().getContentAsString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Cache<Object, Object> jsonCache() {
+		return (Cache<Object, Object>) cacheManager.getCache(CustomerREST.JSON_CACHE).getNativeCache();
+	}
+
+}
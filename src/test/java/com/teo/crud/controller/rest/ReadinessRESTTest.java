@@ -0,0 +1,67 @@
+package com.teo.crud.controller.rest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.teo.crud.Application;
+
+/**
+ * ReadinessREST controller unit tests
+ * We are using Spring MVC Mocks to simulate HTTP requests
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class)
+@WebAppConfiguration
+public class ReadinessRESTTest {
+
+    protected MockMvc mvc;
+
+    @Autowired
+    protected WebApplicationContext webApplicationContext;
+
+	@Before
+	public void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+	}
+
+	@Test
+	public void testGetReadinessStarted() throws Exception {
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/ready")).andReturn();
+
+		Assert.assertEquals("failure - expected HTTP status 200", 200, result.getResponse().getStatus());
+		Assert.assertEquals("failure - expected ready", "ACCEPTING_TRAFFIC", result.getResponse().getContentAsString());
+
+	}
+
+	@Test
+	public void testGetReadinessRefusing() throws Exception {
+
+		AvailabilityChangeEvent.publish(webApplicationContext, ReadinessState.REFUSING_TRAFFIC);
+		try {
+			MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/ready")).andReturn();
+
+			Assert.assertEquals("failure - expected HTTP status 503", 503, result.getResponse().getStatus());
+			Assert.assertEquals("failure - expected not ready", "REFUSING_TRAFFIC",
+					result.getResponse().getContentAsString());
+		} finally {
+			AvailabilityChangeEvent.publish(webApplicationContext, ReadinessState.ACCEPTING_TRAFFIC);
+		}
+
+	}
+
+}
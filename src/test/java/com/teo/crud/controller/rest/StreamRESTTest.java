@@ -0,0 +1,113 @@
+package com.teo.crud.controller.rest;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.teo.crud.Application;
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.CustomerService;
+import com.teo.crud.util.JsonMappingUtil;
+
+/**
+ * Tests of the streams of customers and addresses, GET /customer/stream and /address/stream.
+ * The streams use the non-blocking output of the servlet container, which the Spring MVC
+ * Mocks don't have, so the requests are sent to the application started on a random port.
+ * The page size is 2, so each stream is read in several pages.
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = Application.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "customer.stream.page-size=2", "address.stream.page-size=2" })
+public class StreamRESTTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private CustomerService customerService;
+
+	@Autowired
+	private AddressService addressService;
+
+	@Test
+	public void testGetCustomerStream() throws Exception {
+
+		List<String> lines = get("/customer/stream");
+
+		Assert.assertEquals("failure - expected one line per customer", customerService.readAll().size(), lines.size());
+		long previousId = 0;
+		for (String line : lines) {
+			Customer customer = JsonMappingUtil.mapFromJson(line, Customer.class);
+			Assert.assertTrue("failure - expected the customers ordered by id", customer.getCustomerId() > previousId);
+			Assert.assertNull("failure - expected no address without expand", customer.getAddress());
+			previousId = customer.getCustomerId();
+		}
+
+	}
+
+	@Test
+	public void testGetCustomerStreamExpandAddress() throws Exception {
+
+		List<String> lines = get("/customer/stream?expand=address");
+
+		Assert.assertEquals("failure - expected one line per customer", customerService.readAll().size(), lines.size());
+		Customer customer = JsonMappingUtil.mapFromJson(lines.get(0), Customer.class);
+		Assert.assertNotNull("failure - expected the address with expand", customer.getAddress());
+
+	}
+
+	@Test
+	public void testGetAddressStream() throws Exception {
+
+		List<String> lines = get("/address/stream");
+
+		Assert.assertEquals("failure - expected one line per address", addressService.readAll().size(), lines.size());
+		long previousId = 0;
+		for (String line : lines) {
+			Address address = JsonMappingUtil.mapFromJson(line, Address.class);
+			Assert.assertTrue("failure - expected the addresses ordered by id", address.getAddressId() > previousId);
+			previousId = address.getAddressId();
+		}
+
+	}
+
+	/**
+	 * Sends a GET and reads the lines of the response.
+	 */
+	private List<String> get(String path) throws Exception {
+
+		HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port + path).toURL().openConnection();
+		Assert.assertEquals("failure - expected HTTP status 200", 200, connection.getResponseCode());
+		Assert.assertEquals("failure - expected newline delimited json", AddressREST.APPLICATION_NDJSON_VALUE,
+				connection.getContentType());
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+}
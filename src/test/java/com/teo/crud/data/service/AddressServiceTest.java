@@ -1,9 +1,18 @@
 package com.teo.crud.data.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.persistence.EntityExistsException;
-import javax.persistence.NoResultException;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.NoResultException;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -11,25 +20,30 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.teo.crud.Application;
 import com.teo.crud.data.model.Address;
 import com.teo.crud.data.service.AddressService;
+import com.teo.crud.metrics.MetricsRegistry;
+import com.teo.crud.metrics.Timer;
 
 /**
  * Unit test methods for the AddressService and AddressServiceBean.
  */
 @RunWith(SpringJUnit4ClassRunner.class)
-@SpringApplicationConfiguration(classes = Application.class)
+@SpringBootTest(classes = Application.class)
 @Transactional
 public class AddressServiceTest{
 
     @Autowired
     private AddressService service;
 
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
     @Before
     public void setUp() {
         service.evictCache();
@@ -39,6 +53,41 @@ public class AddressServiceTest{
     public void tearDown() {
     }
 
+    @Test
+    public void testReadConcurrentMissesLoadedOnce() throws Exception {
+
+        final int threads = 32;
+        final Long id = Long.valueOf(1);
+        Timer queries = metricsRegistry.queryTimer("AddressRepository.findById");
+        long before = queries.getCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Address>> reads = new ArrayList<Future<Address>>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                reads.add(executor.submit(new Callable<Address>() {
+                    @Override
+                    public Address call() throws Exception {
+                        start.await();
+                        return service.read(id);
+                    }
+                }));
+            }
+            start.countDown();
+            Address first = reads.get(0).get();
+            for (Future<Address> read : reads) {
+                Assert.assertSame("failure - expected the address of the single load", first, read.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals("failure - expected one query for all the concurrent misses", 1,
+                queries.getCount() - before);
+
+    }
+
     @Test
     public void testFindAll() {
 
@@ -49,10 +98,51 @@ public class AddressServiceTest{
 
     }
 
+    @Test
+    public void testFindAllCached() {
+
+        Collection<Address> list = service.readAll();
+
+        Assert.assertSame("failure - expected cached list", list, service.readAll());
+
+        Address entity = new Address();
+        entity.setStreetName("streetName");
+        service.create(entity);
+
+        Collection<Address> listAfterCreate = service.readAll();
+
+        Assert.assertNotSame("failure - expected list evicted by create", list, listAfterCreate);
+        Assert.assertEquals("failure - expected list size after create", 6, listAfterCreate.size());
+
+        service.delete(entity.getAddressId());
+
+        Assert.assertEquals("failure - expected list size after delete", 5, service.readAll().size());
+
+    }
+
+    @Test
+    public void testExportAll() throws IOException {
+
+        final List<Long> ids = new ArrayList<Long>();
+
+        long count = service.exportAll(new EntityCallback<Address>() {
+            @Override
+            public void process(Address address) {
+                ids.add(address.getAddressId());
+            }
+        });
+
+        Assert.assertEquals("failure - expected export count", 5, count);
+        Assert.assertEquals("failure - expected one callback per address", 5, ids.size());
+        Assert.assertEquals("failure - expected first address", Long.valueOf(1), ids.get(0));
+        Assert.assertEquals("failure - expected last address", Long.valueOf(5), ids.get(4));
+
+    }
+
     @Test
     public void testFindOne() {
 
-        Long id = new Long(1);
+        Long id = Long.valueOf(1);
 
         Address entity = service.read(id);
 
@@ -73,6 +163,40 @@ public class AddressServiceTest{
 
     }
 
+    @Test
+    public void testFindOneNotFoundCached() {
+
+        Long id = Long.MAX_VALUE;
+        Timer queries = metricsRegistry.queryTimer("AddressRepository.findById");
+        long before = queries.getCount();
+
+        Assert.assertNull("failure - expected null", service.read(id));
+        Assert.assertNull("failure - expected null from the missing cache", service.read(id));
+        Assert.assertTrue("failure - expected no address from the missing cache",
+                service.readByIds(Arrays.asList(id)).isEmpty());
+
+        Assert.assertEquals("failure - expected one query for the missing id", 1, queries.getCount() - before);
+
+    }
+
+    @Test
+    public void testCreateEvictsMissing() {
+
+        Address first = new Address();
+        first.setStreetName("streetName");
+        Long nextId = service.create(first).getAddressId() + 1;
+        Assert.assertNull("failure - expected no address yet", service.read(nextId));
+
+        Address next = new Address();
+        next.setStreetName("streetName");
+        Address createdEntity = service.create(next);
+
+        Assert.assertEquals("failure - expected the next id of the sequence", nextId, createdEntity.getAddressId());
+        Assert.assertSame("failure - expected the created address, not the missing id", createdEntity,
+                service.read(nextId));
+
+    }
+
     @Test
     public void testCreate() {
 
@@ -117,7 +241,7 @@ public class AddressServiceTest{
     @Test
     public void testUpdate() {
 
-        Long id = new Long(1);
+        Long id = Long.valueOf(1);
 
         Address entity = service.read(id);
 
@@ -163,7 +287,7 @@ public class AddressServiceTest{
     @Test
     public void testDelete() {
 
-        Long id = new Long(5);
+        Long id = Long.valueOf(5);
 
         Address entity = service.read(id);
 
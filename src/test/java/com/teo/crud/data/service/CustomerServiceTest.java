@@ -1,9 +1,24 @@
 package com.teo.crud.data.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-
-import javax.persistence.EntityExistsException;
-import javax.persistence.NoResultException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.PersistenceContext;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -13,19 +28,24 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.teo.crud.Application;
+import com.teo.crud.data.model.Address;
 import com.teo.crud.data.model.Customer;
 import com.teo.crud.data.service.CustomerService;
+import com.teo.crud.metrics.MetricsRegistry;
+import com.teo.crud.metrics.Timer;
 
 /**
  * Unit test methods for the CustomerService and CustomerServiceBean.
  */
 @RunWith(SpringJUnit4ClassRunner.class)
-@SpringApplicationConfiguration(classes = Application.class)
+@SpringBootTest(classes = Application.class)
 @Transactional
 public class CustomerServiceTest {
 
@@ -34,6 +54,15 @@ public class CustomerServiceTest {
 	@Autowired
     private CustomerService service;
 
+	@Autowired
+    private AddressService addressService;
+
+	@Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Before
     public void setUp() {
         service.evictCache();
@@ -53,10 +82,219 @@ public class CustomerServiceTest {
 
     }
 
+    @Test
+    public void testFindAllCached() {
+
+        Statistics statistics = entityManager.unwrap(Session.class).getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        Collection<Customer> list = service.readAll();
+        statistics.clear();
+        Collection<Customer> cachedList = service.readAll();
+
+        Assert.assertSame("failure - expected cached list", list, cachedList);
+        Assert.assertEquals("failure - expected no sql statement", 0, statistics.getPrepareStatementCount());
+
+        Customer entity = new Customer();
+        entity.setName("CustomerName");
+        service.create(entity);
+
+        Collection<Customer> listAfterCreate = service.readAll();
+
+        Assert.assertEquals("failure - expected list size after create", 5, listAfterCreate.size());
+
+        Address address = addressService.read(Long.valueOf(1));
+        address.setStreetName("streetName");
+        addressService.update(address);
+
+        Assert.assertNotSame("failure - expected list evicted by address update", listAfterCreate,
+                service.readAll());
+
+    }
+
+    @Test
+    public void testReadConcurrentMissesLoadedOnce() throws Exception {
+
+        final int threads = 32;
+        final Long id = Long.valueOf(1);
+        Timer queries = metricsRegistry.queryTimer("CustomerRepository.findOneWithAddress");
+        long before = queries.getCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Customer>> reads = new ArrayList<Future<Customer>>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                reads.add(executor.submit(new Callable<Customer>() {
+                    @Override
+                    public Customer call() throws Exception {
+                        start.await();
+                        return service.read(id);
+                    }
+                }));
+            }
+            start.countDown();
+            Customer first = reads.get(0).get();
+            for (Future<Customer> read : reads) {
+                Assert.assertSame("failure - expected the customer of the single load", first, read.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals("failure - expected one query for all the concurrent misses", 1,
+                queries.getCount() - before);
+
+    }
+
+    @Test
+    public void testReadByIds() {
+
+        Statistics statistics = entityManager.unwrap(Session.class).getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        service.read(Long.valueOf(2));
+        statistics.clear();
+        List<Customer> customers = service.readByIds(Arrays.asList(Long.valueOf(3), Long.valueOf(2), Long.valueOf(999), Long.valueOf(1)));
+
+        Assert.assertEquals("failure - expected the existing customers", 3, customers.size());
+        Assert.assertEquals("failure - expected the order of the ids", Long.valueOf(3), customers.get(0).getCustomerId());
+        Assert.assertEquals("failure - expected the order of the ids", Long.valueOf(2), customers.get(1).getCustomerId());
+        Assert.assertEquals("failure - expected the order of the ids", Long.valueOf(1), customers.get(2).getCustomerId());
+        Assert.assertEquals("failure - expected one sql statement for the misses", 1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        service.readByIds(Arrays.asList(Long.valueOf(1), Long.valueOf(3)));
+
+        Assert.assertEquals("failure - expected no sql statement, the customers are cached", 0,
+                statistics.getPrepareStatementCount());
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFindAllUnmodifiable() {
+
+        service.readAll().clear();
+
+    }
+
+    @Test
+    public void testReadPage() {
+
+        List<Customer> firstPage = service.readPage(null, 3, false);
+
+        Assert.assertEquals("failure - expected first page size", 3, firstPage.size());
+        Assert.assertEquals("failure - expected first page ordered by id", Long.valueOf(1),
+                firstPage.get(0).getCustomerId());
+
+        Long afterId = firstPage.get(firstPage.size() - 1).getCustomerId();
+        List<Customer> secondPage = service.readPage(afterId, 3, false);
+
+        Assert.assertEquals("failure - expected second page size", 1, secondPage.size());
+        Assert.assertEquals("failure - expected second page after first page", Long.valueOf(4),
+                secondPage.get(0).getCustomerId());
+
+        List<Customer> lastPage = service.readPage(secondPage.get(0).getCustomerId(), 3, false);
+
+        Assert.assertTrue("failure - expected empty last page", lastPage.isEmpty());
+
+    }
+
+    /**
+     * The test transaction shares one persistence context between the pages, 
+     * as open-in-view does for the pages of a streamed response.
+     */
+    @Test
+    public void testReadPagesDetached() {
+
+        Session session = entityManager.unwrap(Session.class);
+        Long afterId = null;
+        List<Customer> page;
+        int pages = 0;
+        do {
+            page = service.readPage(afterId, 1, pages % 2 == 0);
+            if (!page.isEmpty()) {
+                afterId = page.get(0).getCustomerId();
+            }
+            pages++;
+        } while (!page.isEmpty());
+
+        Assert.assertEquals("failure - expected one page per customer and an empty page", 5, pages);
+        Assert.assertEquals("failure - expected no entity kept in the persistence context", 0,
+                session.getStatistics().getEntityCount());
+
+    }
+
+    /**
+     * Creates count customers, each with its own address, and clears the persistence
+     * context, so the next reads have to load the customers and addresses from the database.
+     * 
+     * @return the hibernate statistics, enabled and cleared
+     */
+    private Statistics createCustomersWithAddresses(int count) {
+        List<Customer> entities = new ArrayList<Customer>();
+        for (int i = 0; i < count; i++) {
+            Address address = new Address();
+            address.setStreetName("streetName" + i);
+            Customer entity = new Customer();
+            entity.setName("CustomerName" + i);
+            entity.setAddress(addressService.create(address));
+            entities.add(entity);
+        }
+        service.createAll(entities);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.unwrap(Session.class).getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        return statistics;
+    }
+
+    @Test
+    public void testReadAllStatementCount() {
+
+        Statistics statistics = createCustomersWithAddresses(20);
+
+        Collection<Customer> list = service.readAll();
+        for (Customer customer : list) {
+            if (customer.getAddress() != null) {
+                customer.getAddress().getStreetName();
+            }
+        }
+
+        Assert.assertEquals("failure - expected list size", 24, list.size());
+        Assert.assertEquals("failure - expected one sql statement", 1, statistics.getPrepareStatementCount());
+
+    }
+
+    @Test
+    public void testReadPageStatementCount() {
+
+        Statistics statistics = createCustomersWithAddresses(20);
+
+        List<Customer> withAddresses = service.readPage(null, 100, true);
+
+        Assert.assertEquals("failure - expected page size", 24, withAddresses.size());
+        Assert.assertEquals("failure - expected one sql statement", 1, statistics.getPrepareStatementCount());
+        Assert.assertTrue("failure - expected address loaded",
+                Hibernate.isInitialized(withAddresses.get(23).getAddress()));
+
+        entityManager.clear();
+        statistics.clear();
+        List<Customer> withoutAddresses = service.readPage(null, 100, false);
+
+        Assert.assertEquals("failure - expected page size", 24, withoutAddresses.size());
+        Assert.assertEquals("failure - expected one sql statement", 1, statistics.getPrepareStatementCount());
+        Assert.assertFalse("failure - expected address not loaded",
+                Hibernate.isInitialized(withoutAddresses.get(23).getAddress()));
+
+    }
+
     @Test
     public void testFindOne() {
 
-        Long id = new Long(1);
+        Long id = Long.valueOf(1);
 
         Customer entity = service.read(id);
 
@@ -77,6 +315,49 @@ public class CustomerServiceTest {
 
     }
 
+    @Test
+    public void testFindOneNotFoundCached() {
+
+        Long id = Long.MAX_VALUE;
+        Timer queries = metricsRegistry.queryTimer("CustomerRepository.findOneWithAddress");
+        long before = queries.getCount();
+
+        Assert.assertNull("failure - expected null", service.read(id));
+        Assert.assertNull("failure - expected null from the missing cache", service.read(id));
+        Assert.assertTrue("failure - expected no customer from the missing cache",
+                service.readByIds(Arrays.asList(id)).isEmpty());
+
+        Assert.assertEquals("failure - expected one query for the missing id", 1, queries.getCount() - before);
+
+    }
+
+    @Test
+    public void testCreateEvictsMissing() {
+
+        Customer first = new Customer();
+        first.setName("CustomerName");
+        Long nextId = service.create(first).getCustomerId() + 1;
+        Assert.assertNull("failure - expected no customer yet", service.read(nextId));
+
+        Customer next = new Customer();
+        next.setName("CustomerName");
+        Customer createdEntity = service.create(next);
+
+        Assert.assertEquals("failure - expected the next id of the sequence", nextId, createdEntity.getCustomerId());
+        Assert.assertSame("failure - expected the created customer, not the missing id", createdEntity,
+                service.read(nextId));
+
+        Long batchId = nextId + 1;
+        Assert.assertNull("failure - expected no customer yet", service.read(batchId));
+        List<Customer> batch = new ArrayList<Customer>();
+        batch.add(new Customer());
+        batch.get(0).setName("CustomerName");
+        Assert.assertEquals("failure - expected the next id of the sequence", batchId, service.createAll(batch).get(0));
+        Assert.assertNotNull("failure - expected the customer created in batch, not the missing id",
+                service.read(batchId));
+
+    }
+
     @Test
     public void testCreate() {
 
@@ -97,6 +378,51 @@ public class CustomerServiceTest {
 
     }
 
+    @Test
+    public void testCreateAll() {
+
+        List<Customer> entities = new ArrayList<Customer>();
+        for (int i = 0; i < 120; i++) {
+            Customer entity = new Customer();
+            entity.setName("CustomerName" + i);
+            entities.add(entity);
+        }
+
+        List<Long> createdIds = service.createAll(entities);
+
+        Assert.assertEquals("failure - expected one id per customer", 120, createdIds.size());
+        Assert.assertEquals("failure - expected unique ids", 120, new HashSet<Long>(createdIds).size());
+        Assert.assertEquals("failure - expected text attribute match", "CustomerName119",
+                service.read(createdIds.get(119)).getName());
+
+        Collection<Customer> list = service.readAll();
+
+        Assert.assertEquals("failure - expected size", 124, list.size());
+
+    }
+
+    @Test
+    public void testCreateAllWithId() {
+
+        Exception exception = null;
+
+        Customer entity = new Customer();
+        entity.setName("test");
+        Customer entityWithId = new Customer();
+        entityWithId.setCustomerId(Long.MAX_VALUE);
+        entityWithId.setName("test");
+
+        try {
+            service.createAll(Arrays.asList(entity, entityWithId));
+        } catch (EntityExistsException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull("failure - expected exception", exception);
+        Assert.assertNull("failure - expected nothing created", entity.getCustomerId());
+
+    }
+
     @Test
     public void testCreateWithId() {
 
@@ -121,7 +447,7 @@ public class CustomerServiceTest {
     @Test
     public void testUpdate() {
 
-        Long id = new Long(1);
+        Long id = Long.valueOf(1);
 
         Customer entity = service.read(id);
 
@@ -160,6 +486,90 @@ public class CustomerServiceTest {
 
     }
 
+    @Test
+    public void testUpdateStaleVersion() {
+
+        Customer entity = service.read(Long.valueOf(2));
+        entityManager.detach(entity);
+        entity.setName("CustomerName");
+        entity.setVersion(entity.getVersion() + 1);
+
+        Exception exception = null;
+        try {
+            service.update(entity);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull("failure - expected optimistic locking failure", exception);
+        Assert.assertEquals("failure - expected name unchanged", "MARIA", service.read(Long.valueOf(2)).getName());
+
+    }
+
+    /**
+     * Many threads increment a counter, the customer name, with read and update.
+     * An update from a stale version fails and is retried from a new read, 
+     * so no increment is lost. 
+     * The test runs without a transaction, each service call commits.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentUpdates() throws Exception {
+
+        final int threads = 8;
+        final int increments = 10;
+        Customer entity = new Customer();
+        entity.setName("0");
+        final Long id = service.create(entity).getCustomerId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> conflicts = new ArrayList<Future<Integer>>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                conflicts.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int conflicts = 0;
+                        for (int done = 0; done < increments;) {
+                            Customer customer = service.read(id);
+                            Customer update = new Customer();
+                            update.setCustomerId(id);
+                            update.setVersion(customer.getVersion());
+                            update.setName(String.valueOf(Integer.parseInt(customer.getName()) + 1));
+                            try {
+                                service.update(update);
+                                done++;
+                            } catch (ObjectOptimisticLockingFailureException e) {
+                                conflicts++;
+                            }
+                        }
+                        return conflicts;
+                    }
+                }));
+            }
+            start.countDown();
+            int totalConflicts = 0;
+            for (Future<Integer> future : conflicts) {
+                totalConflicts += future.get();
+            }
+            logger.info("testConcurrentUpdates conflicts:{}", totalConflicts);
+
+            service.evictCache();
+            Customer updated = service.read(id);
+
+            Assert.assertEquals("failure - expected no lost update", String.valueOf(threads * increments),
+                    updated.getName());
+            Assert.assertEquals("failure - expected one version per update", Long.valueOf(threads * increments),
+                    updated.getVersion());
+        } finally {
+            executor.shutdownNow();
+            service.delete(id);
+        }
+
+    }
+
     /**
      * this test will ensure the address that is deleted 
      * is not referenced from a customer
@@ -167,7 +577,7 @@ public class CustomerServiceTest {
     @Test
     public void testDelete() {
 
-        Long id = new Long(4);
+        Long id = Long.valueOf(4);
 
         Customer entity = service.read(id);
 
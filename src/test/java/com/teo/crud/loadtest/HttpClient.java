@@ -0,0 +1,91 @@
+package com.teo.crud.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal http client of the load test, on HttpURLConnection, so the load test
+ * needs no other library than the JDK.
+ *
+ * The response bodies are read fully and the streams closed, so the JDK keeps
+ * the connections alive and reuses them, as a browser or a REST client would.
+ *
+ * @author teodor cotruta
+ */
+class HttpClient {
+
+	private final String baseUrl;
+
+	private final byte[] buffer = new byte[8192];
+
+	/**
+	 * @param baseUrl like http://localhost:8080
+	 */
+	HttpClient(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	/**
+	 * @param path of the resource, like /customer/1
+	 * @return the http status
+	 * @throws IOException if the request can't be sent
+	 */
+	int get(String path) throws IOException {
+		return send("GET", path, null);
+	}
+
+	/**
+	 * @param path of the resource
+	 * @param json the request body
+	 * @return the http status
+	 * @throws IOException if the request can't be sent
+	 */
+	int post(String path, String json) throws IOException {
+		return send("POST", path, json);
+	}
+
+	/**
+	 * @param path of the resource
+	 * @param json the request body
+	 * @return the http status
+	 * @throws IOException if the request can't be sent
+	 */
+	int put(String path, String json) throws IOException {
+		return send("PUT", path, json);
+	}
+
+	private int send(String method, String path, String json) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) URI.create(baseUrl + path).toURL().openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Accept", "application/json");
+		if (json != null) {
+			byte[] body = json.getBytes(StandardCharsets.UTF_8);
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			connection.setFixedLengthStreamingMode(body.length);
+			OutputStream out = connection.getOutputStream();
+			try {
+				out.write(body);
+			} finally {
+				out.close();
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		if (in != null) {
+			try {
+				while (in.read(buffer) >= 0) {
+					// the body is not used, it is read so the connection can be reused
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return status;
+	}
+
+}
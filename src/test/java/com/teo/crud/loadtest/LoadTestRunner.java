@@ -0,0 +1,323 @@
+package com.teo.crud.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.teo.crud.Application;
+import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * An end to end http load test of the application.
+ *
+ * Starts the application on a random port, against the embedded HSQLDB seeded with
+ * volume customers and addresses, then sends the requests of a workload from
+ * threads clients for duration seconds, after warmup seconds not measured.
+ * The latency of each operation is recorded in an HdrHistogram and the report,
+ * with the throughput and the percentiles, is printed and written to a file of
+ * the report directory. No other server is needed, everything runs in this JVM.
+ *
+ * Options, all optional:
+ *   --workload=read-heavy|write-heavy|list-scan|customer  the mix of requests (read-heavy)
+ *   --threads=8           the number of concurrent clients
+ *   --duration=30         the measured seconds
+ *   --warmup=10           the seconds before the measure
+ *   --volume=1000         the number of customers and of addresses seeded
+ *   --report=target/loadtest  the directory of the reports
+ *   --server-threads=platform|virtual|both  the threads of the requests in the
+ *                         application (platform). With both, the workload is run
+ *                         once on each, the application restarted between the runs,
+ *                         and the two runs are compared.
+ * Any other --name=value is passed to the application as a property, like
+ *   --cache.customers.spec=maximumSize=0
+ *
+ * Run it with: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--workload=list-scan"
+ * Compare the platform and the virtual threads on the /customer endpoints with:
+ *   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--workload=customer --threads=400 --server-threads=both"
+ *
+ * @author teodor cotruta
+ */
+public class LoadTestRunner {
+
+	private final Workload workload;
+
+	private final int threads;
+
+	private final int durationSeconds;
+
+	private final int warmupSeconds;
+
+	private final int volume;
+
+	private final File reportDirectory;
+
+	private final String serverThreads;
+
+	private final Map<String, Object> properties;
+
+	LoadTestRunner(Map<String, String> options) {
+		Map<String, String> remaining = new HashMap<String, String>(options);
+		workload = Workload.of(option(remaining, "workload", "read-heavy"));
+		threads = Integer.parseInt(option(remaining, "threads", "8"));
+		durationSeconds = Integer.parseInt(option(remaining, "duration", "30"));
+		warmupSeconds = Integer.parseInt(option(remaining, "warmup", "10"));
+		volume = Integer.parseInt(option(remaining, "volume", "1000"));
+		reportDirectory = new File(option(remaining, "report", "target/loadtest"));
+		serverThreads = option(remaining, "server-threads", "platform");
+		if (!serverThreads.equals("platform") && !serverThreads.equals("virtual") && !serverThreads.equals("both")) {
+			throw new IllegalArgumentException("Expected --server-threads=platform|virtual|both, was: " + serverThreads);
+		}
+		properties = new HashMap<String, Object>();
+		properties.put("server.port", "0");
+		properties.put("logging.level.com.teo", "WARN");
+		properties.putAll(remaining);
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.remove(name);
+		return value != null ? value : defaultValue;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+				throw new IllegalArgumentException("Expected --name=value, was: " + arg);
+			}
+			options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+		}
+		new LoadTestRunner(options).run();
+	}
+
+	/**
+	 * Runs the workload on the server threads of the options, once, or once on 
+	 * the platform threads and once on the virtual threads, then compares the two runs.
+	 *
+	 * @throws Exception if the application can't be started or a report written
+	 */
+	void run() throws Exception {
+		if (serverThreads.equals("both")) {
+			Run platform = run(false);
+			Run virtual = run(true);
+			compare(System.out, platform, virtual);
+		} else {
+			run(serverThreads.equals("virtual"));
+		}
+	}
+
+	/**
+	 * Starts the application, runs the workload, writes the report and stops the application.
+	 *
+	 * @param virtualThreads true to run the requests of the application on virtual threads
+	 * @return the measures of the run
+	 * @throws Exception if the application can't be started or the report written
+	 */
+	private Run run(boolean virtualThreads) throws Exception {
+		Map<String, Object> runProperties = new HashMap<String, Object>(properties);
+		runProperties.put("spring.threads.virtual.enabled", String.valueOf(virtualThreads));
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+				.properties(runProperties)
+				.run();
+		try {
+			int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+			SampleData data = new SampleData(context.getBean(CustomerService.class),
+					context.getBean(AddressService.class), volume);
+
+			long now = System.nanoTime();
+			long measureStart = now + TimeUnit.SECONDS.toNanos(warmupSeconds);
+			long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+			List<Client> clients = new ArrayList<Client>();
+			for (int i = 0; i < threads; i++) {
+				Client client = new Client(new HttpClient("http://localhost:" + port), data, measureStart, measureEnd);
+				client.setName("loadtest-" + i);
+				clients.add(client);
+				client.start();
+			}
+			for (Client client : clients) {
+				client.join();
+			}
+			Run run = new Run(virtualThreads ? "virtual" : "platform", clients);
+			report(run);
+			return run;
+		} finally {
+			context.close();
+		}
+	}
+
+	private void report(Run run) throws IOException {
+		String name = workload + "-" + run.serverThreads + "-"
+				+ new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt";
+		reportDirectory.mkdirs();
+		File file = new File(reportDirectory, name);
+		PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8");
+		try {
+			print(System.out, run);
+			print(out, run);
+		} finally {
+			out.close();
+		}
+		System.out.println("Report written to " + file.getAbsolutePath());
+	}
+
+	private void print(PrintStream out, Run run) {
+		out.printf("Workload %s, %d threads, %d s measured after %d s of warmup, %d customers and addresses, "
+				+ "%s server threads%n", workload, threads, durationSeconds, warmupSeconds, volume, run.serverThreads);
+		out.println();
+		printHeader(out, "operation (latency in ms)");
+		for (Map.Entry<Operation, Result> entry : run.results.entrySet()) {
+			entry.getValue().print(out, entry.getKey().name());
+		}
+		Result total = run.total;
+		total.print(out, "ALL");
+		out.println();
+		out.println("Latency distribution of all the requests, in ms:");
+		total.histogram.outputPercentileDistribution(out, 1000.0);
+	}
+
+	private void compare(PrintStream out, Run platform, Run virtual) {
+		out.println();
+		out.printf("Workload %s, %d threads: platform and virtual server threads%n", workload, threads);
+		out.println();
+		printHeader(out, "server threads, operation");
+		for (Operation operation : workload.getOperations()) {
+			platform.results.get(operation).print(out, "platform " + operation.name());
+			virtual.results.get(operation).print(out, "virtual " + operation.name());
+		}
+		platform.total.print(out, "platform ALL");
+		virtual.total.print(out, "virtual ALL");
+	}
+
+	private static void printHeader(PrintStream out, String title) {
+		out.printf("%-36s %9s %9s %7s %7s %9s %9s %9s %9s %9s%n", title, "requests",
+				"req/s", "errors", "409", "p50", "p90", "p99", "p99.9", "max");
+	}
+
+	/**
+	 * The measures of one run of the workload, by operation and in total.
+	 */
+	private class Run {
+
+		final String serverThreads;
+
+		final Map<Operation, Result> results = new EnumMap<Operation, Result>(Operation.class);
+
+		final Result total = new Result();
+
+		Run(String serverThreads, List<Client> clients) {
+			this.serverThreads = serverThreads;
+			for (Operation operation : workload.getOperations()) {
+				Result result = new Result();
+				for (Client client : clients) {
+					result.add(client.results.get(operation));
+				}
+				results.put(operation, result);
+				total.add(result);
+			}
+		}
+	}
+
+	/**
+	 * The measures of one operation.
+	 */
+	private class Result {
+
+		/**
+		 * The latencies, in microseconds.
+		 */
+		final Histogram histogram = new Histogram(3);
+
+		long errors;
+
+		long conflicts;
+
+		void record(long latencyMicros, int status) {
+			histogram.recordValue(latencyMicros);
+			if (status == 409) {
+				conflicts++;
+			} else if (status == 0 || status >= 400) {
+				errors++;
+			}
+		}
+
+		void add(Result result) {
+			histogram.add(result.histogram);
+			errors += result.errors;
+			conflicts += result.conflicts;
+		}
+
+		void print(PrintStream out, String name) {
+			long count = histogram.getTotalCount();
+			out.printf("%-36s %9d %9.1f %7d %7d %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, count,
+					(double) count / durationSeconds, errors, conflicts,
+					histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(90) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMaxValue() / 1000.0);
+		}
+	}
+
+	/**
+	 * A client thread, sending the requests of the workload one after the other.
+	 * The latencies are recorded in the results of the thread, merged at the end,
+	 * so the threads don't contend on them.
+	 * A request that fails with an IOException is counted as an error with status 0.
+	 */
+	private class Client extends Thread {
+
+		final Map<Operation, Result> results = new EnumMap<Operation, Result>(Operation.class);
+
+		private final HttpClient httpClient;
+
+		private final SampleData data;
+
+		private final long measureStart;
+
+		private final long measureEnd;
+
+		Client(HttpClient httpClient, SampleData data, long measureStart, long measureEnd) {
+			this.httpClient = httpClient;
+			this.data = data;
+			this.measureStart = measureStart;
+			this.measureEnd = measureEnd;
+			for (Operation operation : workload.getOperations()) {
+				results.put(operation, new Result());
+			}
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			while (start < measureEnd) {
+				Operation operation = workload.next();
+				int status;
+				try {
+					status = operation.send(httpClient, data);
+				} catch (IOException e) {
+					status = 0;
+				}
+				long end = System.nanoTime();
+				if (start >= measureStart) {
+					results.get(operation).record(TimeUnit.NANOSECONDS.toMicros(end - start), status);
+				}
+				start = end;
+			}
+		}
+	}
+
+}
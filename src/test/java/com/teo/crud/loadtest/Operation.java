@@ -0,0 +1,97 @@
+package com.teo.crud.loadtest;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The http requests the load test sends, on the seeded customers and addresses.
+ *
+ * @author teodor cotruta
+ */
+enum Operation {
+
+	GET_CUSTOMER {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			return client.get("/customer/" + data.randomCustomerId());
+		}
+	},
+
+	GET_CUSTOMER_EXPAND_ADDRESS {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			return client.get("/customer/" + data.randomCustomerId() + "?expand=address");
+		}
+	},
+
+	GET_ADDRESS {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			return client.get("/address/" + data.randomAddressId());
+		}
+	},
+
+	GET_CUSTOMER_PAGE {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			return client.get("/customer?afterId=" + data.randomCustomerId() + "&limit=100");
+		}
+	},
+
+	GET_CUSTOMERS {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			return client.get("/customer");
+		}
+	},
+
+	GET_ADDRESSES {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			return client.get("/address");
+		}
+	},
+
+	POST_CUSTOMER {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			int i = ThreadLocalRandom.current().nextInt(1000000);
+			return client.post("/customer", "{\"name\":\"LOAD TEST " + i + "\",\"telephoneNumber\":\"09 449 " + i
+					+ "\",\"address\":{\"addressId\":" + data.randomAddressId() + "}}");
+		}
+	},
+
+	/**
+	 * Without a version in the json, so the update is on the current version.
+	 */
+	PUT_CUSTOMER {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			int i = ThreadLocalRandom.current().nextInt(1000000);
+			return client.put("/customer", "{\"customerId\":" + data.randomCustomerId() + ",\"name\":\"LOAD TEST " + i
+					+ "\",\"telephoneNumber\":\"09 449 " + i + "\",\"address\":{\"addressId\":" + data.randomAddressId() + "}}");
+		}
+	},
+
+	/**
+	 * Without a version in the json, so the update is on the current version.
+	 */
+	PUT_ADDRESS {
+		@Override
+		int send(HttpClient client, SampleData data) throws IOException {
+			int i = ThreadLocalRandom.current().nextInt(1000);
+			return client.put("/address", "{\"addressId\":" + data.randomAddressId() + ",\"streetNumber\":\"" + i
+					+ "\",\"streetName\":\"LOAD TEST STREET\",\"streetType\":\"STREET\",\"suburb\":\"TAKAPUNA\""
+					+ ",\"city\":\"AUCKLAND\",\"country\":\"NEW ZEALAND\"}");
+		}
+	};
+
+	/**
+	 * @param client of the thread sending the request
+	 * @param data the ids of the seeded customers and addresses
+	 * @return the http status of the response
+	 * @throws IOException if the request can't be sent
+	 */
+	abstract int send(HttpClient client, SampleData data) throws IOException;
+
+}
@@ -0,0 +1,78 @@
+package com.teo.crud.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.teo.crud.data.model.Address;
+import com.teo.crud.data.model.Customer;
+import com.teo.crud.data.service.AddressService;
+import com.teo.crud.data.service.CustomerService;
+
+/**
+ * The customers and addresses added to the database before the load test,
+ * each customer with its own address.
+ *
+ * @author teodor cotruta
+ */
+class SampleData {
+
+	private final long[] customerIds;
+
+	private final long[] addressIds;
+
+	/**
+	 * Adds volume addresses and volume customers, through the services,
+	 * then evicts the caches, so the load test starts with them empty.
+	 *
+	 * @param customerService the service the customers are created with
+	 * @param addressService the service the addresses are created with
+	 * @param volume the number of addresses and of customers
+	 */
+	SampleData(CustomerService customerService, AddressService addressService, int volume) {
+		addressIds = new long[volume];
+		customerIds = new long[volume];
+		List<Customer> customers = new ArrayList<Customer>();
+		int created = 0;
+		for (int i = 0; i < volume; i++) {
+			Address address = new Address();
+			address.setStreetNumber(String.valueOf(i));
+			address.setStreetName("LOAD TEST STREET");
+			address.setStreetType("STREET");
+			address.setSuburb("TAKAPUNA");
+			address.setCity("AUCKLAND");
+			address.setCountry("NEW ZEALAND");
+			address = addressService.create(address);
+			addressIds[i] = address.getAddressId();
+
+			Customer customer = new Customer();
+			customer.setName("CUSTOMER " + i);
+			customer.setTelephoneNumber("09 449 " + i);
+			customer.setAddress(address);
+			customers.add(customer);
+			if (customers.size() == 1000 || i == volume - 1) {
+				for (Long customerId : customerService.createAll(customers)) {
+					customerIds[created++] = customerId;
+				}
+				customers.clear();
+			}
+		}
+		customerService.evictCache();
+		addressService.evictCache();
+	}
+
+	/**
+	 * @return the id of one of the seeded customers, picked at random
+	 */
+	long randomCustomerId() {
+		return customerIds[ThreadLocalRandom.current().nextInt(customerIds.length)];
+	}
+
+	/**
+	 * @return the id of one of the seeded addresses, picked at random
+	 */
+	long randomAddressId() {
+		return addressIds[ThreadLocalRandom.current().nextInt(addressIds.length)];
+	}
+
+}
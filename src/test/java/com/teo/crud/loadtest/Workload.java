@@ -0,0 +1,92 @@
+package com.teo.crud.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The mixes of operations of the load test, each operation with its share
+ * of the requests, in percent.
+ *
+ * @author teodor cotruta
+ */
+enum Workload {
+
+	/**
+	 * Mostly single reads, as a client showing customers would do.
+	 */
+	READ_HEAVY(new Operation[] { Operation.GET_CUSTOMER, Operation.GET_CUSTOMER_EXPAND_ADDRESS,
+			Operation.GET_ADDRESS, Operation.PUT_CUSTOMER, Operation.PUT_ADDRESS },
+			new int[] { 60, 20, 15, 3, 2 }),
+
+	/**
+	 * Mostly creates and updates, each of them evicting the list caches.
+	 */
+	WRITE_HEAVY(new Operation[] { Operation.POST_CUSTOMER, Operation.PUT_CUSTOMER, Operation.PUT_ADDRESS,
+			Operation.GET_CUSTOMER, Operation.GET_ADDRESS },
+			new int[] { 30, 30, 10, 20, 10 }),
+
+	/**
+	 * Pages and full lists of customers and addresses.
+	 */
+	LIST_SCAN(new Operation[] { Operation.GET_CUSTOMER_PAGE, Operation.GET_ADDRESSES, Operation.GET_CUSTOMERS },
+			new int[] { 80, 15, 5 }),
+
+	/**
+	 * The /customer endpoints only: single reads, pages, creates and updates.
+	 */
+	CUSTOMER(new Operation[] { Operation.GET_CUSTOMER, Operation.GET_CUSTOMER_EXPAND_ADDRESS,
+			Operation.GET_CUSTOMER_PAGE, Operation.POST_CUSTOMER, Operation.PUT_CUSTOMER },
+			new int[] { 50, 20, 15, 5, 10 });
+
+	private final Operation[] operations;
+
+	private final int[] cumulativePercents;
+
+	private Workload(Operation[] operations, int[] percents) {
+		this.operations = operations;
+		this.cumulativePercents = new int[percents.length];
+		int total = 0;
+		for (int i = 0; i < percents.length; i++) {
+			total += percents[i];
+			cumulativePercents[i] = total;
+		}
+		if (total != 100) {
+			throw new IllegalArgumentException("The percents of " + name() + " add up to " + total);
+		}
+	}
+
+	/**
+	 * @return the operations of the workload
+	 */
+	Operation[] getOperations() {
+		return operations;
+	}
+
+	/**
+	 * @return the next operation to send, picked at random by the shares of the workload
+	 */
+	Operation next() {
+		int percent = ThreadLocalRandom.current().nextInt(100);
+		int i = 0;
+		while (percent >= cumulativePercents[i]) {
+			i++;
+		}
+		return operations[i];
+	}
+
+	/**
+	 * @param name like read-heavy
+	 * @return the workload with that name
+	 */
+	static Workload of(String name) {
+		return valueOf(name.trim().toUpperCase().replace('-', '_'));
+	}
+
+	/**
+	 * @return the name of the workload, like read-heavy
+	 */
+	@Override
+	public String toString() {
+		return name().toLowerCase().replace('_', '-');
+	}
+
+}
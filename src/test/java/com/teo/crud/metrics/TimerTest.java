@@ -0,0 +1,72 @@
+package com.teo.crud.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of the window of the Timer percentiles, with a clock set by the test.
+ */
+public class TimerTest {
+
+	private long now = TimeUnit.HOURS.toNanos(1);
+
+	private final Timer timer = new Timer(60000) {
+		@Override
+		long nanoTime() {
+			return now;
+		}
+	};
+
+	@Test
+	public void testPercentilesOfWindow() {
+
+		record(1000, 100);
+		Assert.assertEquals("failure - expected the slow calls", 1.0, timer.getSecondsAtPercentile(99), 0.01);
+
+		now += TimeUnit.SECONDS.toNanos(30);
+		record(10, 100);
+		Assert.assertEquals("failure - expected the slow calls still in the window", 1.0,
+				timer.getMaxSeconds(), 0.01);
+
+		now += TimeUnit.SECONDS.toNanos(40);
+		Assert.assertEquals("failure - expected the slow calls out of the window", 0.01,
+				timer.getSecondsAtPercentile(99), 0.001);
+		Assert.assertEquals("failure - expected the max of the window", 0.01, timer.getMaxSeconds(), 0.001);
+
+	}
+
+	@Test
+	public void testCallsSinceLastReadInWindow() {
+
+		record(1000, 10);
+		now += TimeUnit.MINUTES.toNanos(5);
+
+		Assert.assertEquals("failure - expected the calls since the last read", 1.0,
+				timer.getSecondsAtPercentile(50), 0.01);
+
+	}
+
+	@Test
+	public void testCountsSinceStart() {
+
+		record(1000, 10);
+		timer.getMaxSeconds();
+		now += TimeUnit.MINUTES.toNanos(5);
+		record(10, 10);
+		timer.record(TimeUnit.MILLISECONDS.toNanos(10), true);
+
+		Assert.assertEquals("failure - expected all the calls", 21, timer.getCount());
+		Assert.assertEquals("failure - expected all the errors", 1, timer.getErrorCount());
+		Assert.assertEquals("failure - expected the total of all the calls", 10.11, timer.getTotalSeconds(), 0.001);
+
+	}
+
+	private void record(long millis, int calls) {
+		for (int i = 0; i < calls; i++) {
+			timer.record(TimeUnit.MILLISECONDS.toNanos(millis), false);
+		}
+	}
+
+}